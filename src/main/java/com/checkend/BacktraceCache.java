@@ -0,0 +1,119 @@
+package com.checkend;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cache of serialized backtraces, so that errors repeatedly thrown from the same place reuse
+ * the JSON of their frames instead of encoding them again for every notice.
+ *
+ * <p>The cache is a fixed number of slots picked by a hash of the frames. A miss is written
+ * straight into the caller's writer, and the bytes are only copied out into the slot once the
+ * same backtrace has been seen there twice, so one-off errors cost no more than an uncached
+ * write. Hits are checked against the stored frames, so a hash collision costs a miss, never
+ * a wrong backtrace. Entries are immutable and slots are replaced atomically, so the cache is
+ * safe to share between threads without locking.
+ */
+final class BacktraceCache {
+    static final BacktraceCache SHARED = new BacktraceCache(512);
+
+    private final AtomicReferenceArray<Entry> slots;
+    // Hash of the last backtrace written through each slot, to spot the second sighting
+    private final AtomicLongArray seen;
+    private final int mask;
+
+    /**
+     * @param slots number of slots, rounded up to a power of two
+     */
+    BacktraceCache(int slots) {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.seen = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Write the first {@code length} frames as a JSON array of {@code file}, {@code line} and
+     * {@code method} objects, from the cache on a hit.
+     */
+    void write(JsonWriter writer, StackTraceElement[] stackTrace, int length) {
+        long hash = hash(stackTrace, length);
+        int index = index(hash);
+        byte[] json = lookup(index, hash, stackTrace, length);
+        if (json != null) {
+            writer.rawValue(json);
+            return;
+        }
+        writer.beginArray();
+        int start = writer.size() - 1;
+        for (int i = 0; i < length; i++) {
+            StackTraceElement element = stackTrace[i];
+            writer.beginObject();
+            writer.name("file").value(element.getFileName() != null ? element.getFileName() : "Unknown");
+            writer.name("line").value(element.getLineNumber());
+            writer.name("method").value(element.getClassName(), '.', element.getMethodName());
+            writer.endObject();
+        }
+        writer.endArray();
+        if (seen.getAndSet(index, hash) == hash) {
+            byte[] written = Arrays.copyOfRange(writer.buffer(), start, writer.size());
+            slots.set(index, new Entry(hash, Arrays.copyOf(stackTrace, length), written));
+        }
+    }
+
+    /**
+     * The cached JSON for the first {@code length} frames, or null if they are not cached.
+     * The returned bytes are shared and must not be modified.
+     */
+    byte[] cached(StackTraceElement[] stackTrace, int length) {
+        long hash = hash(stackTrace, length);
+        return lookup(index(hash), hash, stackTrace, length);
+    }
+
+    private byte[] lookup(int index, long hash, StackTraceElement[] stackTrace, int length) {
+        Entry entry = slots.get(index);
+        return entry != null && entry.matches(hash, stackTrace, length) ? entry.json : null;
+    }
+
+    private int index(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static long hash(StackTraceElement[] stackTrace, int length) {
+        // String hash codes are cached, so this touches no characters after the first time
+        long hash = length;
+        for (int i = 0; i < length; i++) {
+            StackTraceElement element = stackTrace[i];
+            hash = hash * 31 + element.getClassName().hashCode();
+            hash = hash * 31 + element.getMethodName().hashCode();
+            hash = hash * 31 + (element.getFileName() != null ? element.getFileName().hashCode() : 0);
+            hash = hash * 31 + element.getLineNumber();
+        }
+        return hash * 0x9e3779b97f4a7c15L;
+    }
+
+    private static final class Entry {
+        private final long hash;
+        private final StackTraceElement[] frames;
+        private final byte[] json;
+
+        Entry(long hash, StackTraceElement[] frames, byte[] json) {
+            this.hash = hash;
+            this.frames = frames;
+            this.json = json;
+        }
+
+        boolean matches(long otherHash, StackTraceElement[] stackTrace, int length) {
+            if (hash != otherHash || frames.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (!frames[i].equals(stackTrace[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
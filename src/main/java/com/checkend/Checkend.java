@@ -3,24 +3,27 @@ package com.checkend;
 import com.checkend.filters.IgnoreFilter;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 /**
  * Main entry point for the Checkend Java SDK.
  */
 public final class Checkend {
+    private static final long DEFAULT_FLUSH_TIMEOUT_MS = 30000;
+
     private static volatile Configuration config;
-    private static volatile Client client;
+    private static volatile Transport transport;
     private static volatile Worker worker;
     private static volatile NoticeBuilder noticeBuilder;
+    private static volatile Deduplicator deduplicator;
+    private static volatile Sampler sampler;
 
-    // Thread-local context storage
-    private static final ThreadLocal<Map<String, Object>> context =
-        ThreadLocal.withInitial(HashMap::new);
-    private static final ThreadLocal<Map<String, Object>> user =
-        ThreadLocal.withInitial(HashMap::new);
-    private static final ThreadLocal<Map<String, Object>> request =
-        ThreadLocal.withInitial(HashMap::new);
+    // Thread-local context storage, only populated once set so that reading it from one of
+    // many short-lived (e.g. virtual) threads allocates nothing
+    private static final ThreadLocal<Map<String, Object>> context = new ThreadLocal<>();
+    private static final ThreadLocal<Map<String, Object>> user = new ThreadLocal<>();
+    private static final ThreadLocal<Map<String, Object>> request = new ThreadLocal<>();
 
     private Checkend() {}
 
@@ -29,9 +32,22 @@ public final class Checkend {
      */
     public static synchronized void configure(Configuration configuration) {
         config = configuration;
-        client = new Client(config);
-        worker = new Worker(config, client);
+        transport = config.getTransport() != null ? config.getTransport() : new Client(config);
+        worker = new Worker(config, transport);
         noticeBuilder = new NoticeBuilder(config);
+        if (deduplicator != null) {
+            deduplicator.close();
+        }
+        sampler = config.getSamplingKeepFirst() > 0
+            ? new Sampler(config.getSamplingKeepFirst(), config.getSamplingPeriodMs())
+            : null;
+        Worker configuredWorker = worker;
+        Transport configuredTransport = transport;
+        boolean async = config.isAsyncSend();
+        deduplicator = config.getDedupWindowMs() > 0
+            ? new Deduplicator(config.getDedupWindowMs(), config.getDedupMaxFingerprints(),
+                notice -> send(notice, async, configuredWorker, configuredTransport))
+            : null;
 
         config.getLogger().info("Configured with endpoint: " + config.getEndpoint());
     }
@@ -53,7 +69,14 @@ public final class Checkend {
     }
 
     /**
-     * Report an exception asynchronously with options.
+     * Report an exception asynchronously with options. With
+     * {@link Configuration#getSamplingKeepFirst() sampling}, frequent errors are only reported
+     * occasionally; with a {@link Configuration#getDedupWindowMs() deduplication window},
+     * repeats of an error already reported within the window are only counted. Both are
+     * decided before a notice is built, as is the local {@link Configuration#getRateLimit()
+     * rate limit}, which applies to the other ways of reporting too. With {@link Configuration#isDeferredBuild() deferred
+     * building}, the notice is then built on a worker thread from a snapshot taken here, with
+     * the configuration current at this point, or here if the builder's backlog is full.
      */
     public static void notify(Throwable exception, Map<String, Object> options) {
         if (!isConfigured() || !config.isEnabled()) {
@@ -61,35 +84,81 @@ public final class Checkend {
         }
 
         if (IgnoreFilter.shouldIgnore(exception, config.getIgnoredExceptions())) {
-            config.getLogger().debug("Ignoring exception: " + exception.getClass().getName());
+            Logger logger = config.getLogger();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Ignoring exception: " + exception.getClass().getName());
+            }
             return;
         }
 
-        Notice notice = noticeBuilder.build(exception, options);
-
-        // Run before_notify callbacks
-        for (Function<Notice, Object> callback : config.getBeforeNotify()) {
-            Object result = callback.apply(notice);
-            if (result instanceof Boolean && !((Boolean) result)) {
-                config.getLogger().debug("Notice filtered by before_notify callback");
+        // Rate limit, sample and count repeats before building a notice for them
+        boolean testing = Testing.isTestingMode();
+        if (!testing && !worker.admit(exception)) {
+            return;
+        }
+        Sampler sample = testing ? null : sampler;
+        Deduplicator dedup = testing ? null : deduplicator;
+        StackTraceElement[] stackTrace = null;
+        long identity = 0;
+        long weight = 1;
+        if (sample != null || dedup != null) {
+            // Fetched once, and handed on so that building does not fetch it again
+            stackTrace = exception.getStackTrace();
+            identity = noticeBuilder.identify(exception, stackTrace, options);
+            if (sample != null && (weight = sample.sample(identity)) == 0) {
                 return;
             }
-            if (result instanceof Notice) {
-                notice = (Notice) result;
+            if (dedup != null && dedup.absorb(identity, weight)) {
+                return;
             }
         }
 
+        // Taken now, so a deferred build is not affected by configure() being called meanwhile
+        Configuration configuration = config;
+        NoticeBuilder builder = noticeBuilder;
+        Worker configuredWorker = worker;
+        Transport configuredTransport = transport;
+        NoticeBuilder.Snapshot snapshot = builder.capture(exception, stackTrace, options, identity);
+        long sampleWeight = weight;
+        if (!testing && configuration.isDeferredBuild() && configuration.isAsyncSend()
+                && configuredWorker.defer(() -> finish(snapshot, sampleWeight, dedup,
+                    configuration, builder, configuredWorker, configuredTransport))) {
+            return;
+        }
+        // Built here when not deferred, or when the builder's backlog is full or it has stopped
+        finish(snapshot, weight, dedup, configuration, builder, configuredWorker, configuredTransport);
+    }
+
+    /**
+     * Build the notice for a reported error and send it, or hold it for repeats.
+     */
+    private static void finish(NoticeBuilder.Snapshot snapshot, long weight, Deduplicator dedup,
+                               Configuration config, NoticeBuilder builder, Worker worker, Transport transport) {
+        Notice notice = applyBeforeNotify(config, builder.build(snapshot));
+        if (notice == null) {
+            return;
+        }
+        notice.setSampleWeight(weight);
+
         // Testing mode
         if (Testing.isTestingMode()) {
             Testing.capture(notice);
             return;
         }
 
+        if (dedup != null) {
+            dedup.open(snapshot.identity(), notice);
+        } else {
+            send(notice, config.isAsyncSend(), worker, transport);
+        }
+    }
+
+    private static void send(Notice notice, boolean async, Worker worker, Transport transport) {
         // Queue for async sending
-        if (config.isAsyncSend()) {
+        if (async) {
             worker.enqueue(notice);
         } else {
-            client.send(notice);
+            transport.send(notice);
         }
     }
 
@@ -112,17 +181,13 @@ public final class Checkend {
             return new Client.Response(0, "Exception ignored", null);
         }
 
-        Notice notice = noticeBuilder.build(exception, options);
+        if (!Testing.isTestingMode() && !worker.admit(exception)) {
+            return new Client.Response(0, "Rate limit exceeded", null);
+        }
 
-        // Run before_notify callbacks
-        for (Function<Notice, Object> callback : config.getBeforeNotify()) {
-            Object result = callback.apply(notice);
-            if (result instanceof Boolean && !((Boolean) result)) {
-                return new Client.Response(0, "Filtered by before_notify", null);
-            }
-            if (result instanceof Notice) {
-                notice = (Notice) result;
-            }
+        Notice notice = applyBeforeNotify(config, noticeBuilder.build(exception, options));
+        if (notice == null) {
+            return new Client.Response(0, "Filtered by before_notify", null);
         }
 
         // Testing mode
@@ -131,7 +196,65 @@ public final class Checkend {
             return new Client.Response(200, "Captured in testing mode", null);
         }
 
-        return client.send(notice);
+        return transport.send(notice);
+    }
+
+    /**
+     * Report an exception without blocking and get a future for the outcome.
+     */
+    public static CompletableFuture<Client.Response> notifyAsync(Throwable exception) {
+        return notifyAsync(exception, null);
+    }
+
+    /**
+     * Report an exception without blocking, with options, and get a future for the outcome.
+     * The notice is sent by the background worker; the future completes once it has been
+     * acknowledged, dropped, or has exhausted its retries. Callers that need a delivery
+     * guarantee can wait on it with a timeout instead of blocking for the HTTP round trip.
+     */
+    public static CompletableFuture<Client.Response> notifyAsync(Throwable exception, Map<String, Object> options) {
+        if (!isConfigured() || !config.isEnabled()) {
+            return CompletableFuture.completedFuture(new Client.Response(0, "SDK not configured or disabled", null));
+        }
+
+        if (IgnoreFilter.shouldIgnore(exception, config.getIgnoredExceptions())) {
+            return CompletableFuture.completedFuture(new Client.Response(0, "Exception ignored", null));
+        }
+
+        if (!Testing.isTestingMode() && !worker.admit(exception)) {
+            return CompletableFuture.completedFuture(new Client.Response(0, "Rate limit exceeded", null));
+        }
+
+        Notice notice = applyBeforeNotify(config, noticeBuilder.build(exception, options));
+        if (notice == null) {
+            return CompletableFuture.completedFuture(new Client.Response(0, "Filtered by before_notify", null));
+        }
+
+        // Testing mode
+        if (Testing.isTestingMode()) {
+            Testing.capture(notice);
+            return CompletableFuture.completedFuture(new Client.Response(200, "Captured in testing mode", null));
+        }
+
+        return worker.submit(notice);
+    }
+
+    /**
+     * Run the before_notify callbacks.
+     * @return the notice to send, or null if a callback filtered it out
+     */
+    private static Notice applyBeforeNotify(Configuration config, Notice notice) {
+        for (Function<Notice, Object> callback : config.getBeforeNotify()) {
+            Object result = callback.apply(notice);
+            if (result instanceof Boolean && !((Boolean) result)) {
+                config.getLogger().debug("Notice filtered by before_notify callback");
+                return null;
+            }
+            if (result instanceof Notice) {
+                notice = (Notice) result;
+            }
+        }
+        return notice;
     }
 
     // Context management
@@ -140,42 +263,56 @@ public final class Checkend {
      * Set custom context for the current thread.
      */
     public static void setContext(Map<String, Object> ctx) {
-        context.get().putAll(ctx);
+        mapFor(context).putAll(ctx);
     }
 
     /**
      * Get the current context.
      */
     public static Map<String, Object> getContext() {
-        return new HashMap<>(context.get());
+        return copyOf(context);
     }
 
     /**
      * Set user information for the current thread.
      */
     public static void setUser(Map<String, Object> usr) {
-        user.get().putAll(usr);
+        mapFor(user).putAll(usr);
     }
 
     /**
      * Get the current user information.
      */
     public static Map<String, Object> getUser() {
-        return new HashMap<>(user.get());
+        return copyOf(user);
     }
 
     /**
      * Set request information for the current thread.
      */
     public static void setRequest(Map<String, Object> req) {
-        request.get().putAll(req);
+        mapFor(request).putAll(req);
     }
 
     /**
      * Get the current request information.
      */
     public static Map<String, Object> getRequest() {
-        return new HashMap<>(request.get());
+        return copyOf(request);
+    }
+
+    private static Map<String, Object> mapFor(ThreadLocal<Map<String, Object>> local) {
+        Map<String, Object> map = local.get();
+        if (map == null) {
+            map = new HashMap<>();
+            local.set(map);
+        }
+        return map;
+    }
+
+    private static Map<String, Object> copyOf(ThreadLocal<Map<String, Object>> local) {
+        Map<String, Object> map = local.get();
+        return map != null ? new HashMap<>(map) : new HashMap<>();
     }
 
     /**
@@ -191,17 +328,55 @@ public final class Checkend {
      * Wait for all pending notices to be sent.
      */
     public static void flush() {
-        if (worker != null) {
-            worker.flush();
+        flush(DEFAULT_FLUSH_TIMEOUT_MS);
+    }
+
+    /**
+     * Wait up to {@code timeoutMs} for all pending notices to be sent.
+     */
+    public static void flush(long timeoutMs) {
+        flushWithResult(timeoutMs);
+    }
+
+    /**
+     * Wait as {@link #flush(long)} does and report the outcome.
+     *
+     * @return the notices delivered and dropped since the previous flush, and those still pending
+     */
+    public static FlushResult flushWithResult(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        Worker w = worker;
+        if (w != null) {
+            // Notices still being built may yet open or join a deduplication window
+            w.awaitBuilt(timeoutMs);
         }
+        // Send the notices held for repeats right away rather than when their windows close
+        Deduplicator dedup = deduplicator;
+        if (dedup != null) {
+            dedup.flush();
+        }
+        return w != null ? w.flushWithResult(Math.max(0, deadline - System.currentTimeMillis())) : FlushResult.EMPTY;
     }
 
     /**
      * Stop the worker.
      */
     public static void stop() {
-        if (worker != null) {
-            worker.stop();
+        Worker w = worker;
+        if (w != null) {
+            // Notices still being built may yet open or join a deduplication window
+            w.stopBuilding();
+        }
+        Deduplicator dedup = deduplicator;
+        deduplicator = null;
+        if (dedup != null) {
+            dedup.close();
+        }
+        if (w != null) {
+            w.stop();
+        }
+        if (transport != null) {
+            transport.close();
         }
     }
 
@@ -209,13 +384,12 @@ public final class Checkend {
      * Reset all state (useful for testing).
      */
     public static synchronized void reset() {
-        if (worker != null) {
-            worker.stop();
-        }
+        stop();
         config = null;
-        client = null;
+        transport = null;
         worker = null;
         noticeBuilder = null;
+        sampler = null;
         clear();
     }
 
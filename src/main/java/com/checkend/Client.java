@@ -2,50 +2,184 @@ package com.checkend;
 
 import java.io.*;
 import java.net.*;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * HTTP client for sending notices to Checkend.
+ *
+ * <p>By default a single {@link HttpClient} is created per configuration and reused for every
+ * notice, so connections are kept alive (and multiplexed over HTTP/2 where the server supports it)
+ * instead of paying for TCP and TLS setup on each send. The legacy {@link HttpURLConnection} path
+ * is still available via {@link Configuration.Builder#legacyHttpClient(boolean)}.
  */
-public final class Client {
-    private static final String SDK_VERSION = "0.1.0";
+public final class Client implements Transport {
+    static final String SDK_VERSION = "0.1.0";
+    private static final List<String> RATE_LIMIT_HEADERS = List.of(
+        "ratelimit-limit", "ratelimit-remaining", "ratelimit-reset",
+        "x-ratelimit-limit", "x-ratelimit-remaining", "x-ratelimit-reset");
 
     private final Configuration config;
     private final Logger logger;
+    private final Endpoint endpoint;
+    private final HttpClient httpClient;
+    // Request bodies are serialized and compressed into buffers reused across sends, pooled
+    // rather than kept per thread, as requests may be sent on short-lived virtual threads
+    private final Pool<JsonWriter> writers;
+    private final Pool<Gzip> compressors;
 
     public Client(Configuration config) {
         this.config = config;
         this.logger = config.getLogger();
+        this.endpoint = new Endpoint(config);
+        this.httpClient = config.isLegacyHttpClient() ? null : buildHttpClient();
+        int concurrency = Math.max(1, config.getMaxInFlight());
+        this.writers = new Pool<>(concurrency, JsonWriter::new, writer -> { });
+        this.compressors = new Pool<>(concurrency, Gzip::new, Gzip::end);
+        if (config.hasProxy()) {
+            logger.debug("Using proxy: " + config.getProxyHost() + ":" + config.getProxyPort());
+        }
     }
 
     /**
      * Send a notice to Checkend.
      * @return Response containing status and body
      */
+    @Override
     public Response send(Notice notice) {
+        JsonWriter writer = writers.acquire();
+        try {
+            writer.reset();
+            notice.writeJson(writer);
+            return post(writer);
+        } finally {
+            writers.release(writer);
+        }
+    }
+
+    /**
+     * Send several notices to Checkend in one request, as a JSON array.
+     * Per-notice results, when the server returns them, are available from
+     * {@link Response#itemStatuses()}.
+     * @return Response containing status and body for the whole batch
+     */
+    @Override
+    public Response sendBatch(List<Notice> notices) {
+        JsonWriter writer = writers.acquire();
+        try {
+            writer.reset();
+            writer.beginArray();
+            for (Notice notice : notices) {
+                notice.writeJson(writer);
+            }
+            writer.endArray();
+            return post(writer);
+        } finally {
+            writers.release(writer);
+        }
+    }
+
+    /**
+     * Free the compressors kept for reuse.
+     */
+    @Override
+    public void close() {
+        compressors.clear();
+    }
+
+    private Response post(JsonWriter json) {
+        if (config.isCompression() && json.size() >= config.getCompressionThreshold()) {
+            Gzip gzip = compressors.acquire();
+            try {
+                gzip.compress(json.buffer(), 0, json.size());
+                return postBody(gzip.buffer(), gzip.size(), "gzip");
+            } finally {
+                compressors.release(gzip);
+            }
+        }
+        return postBody(json.buffer(), json.size(), null);
+    }
+
+    private Response postBody(byte[] body, int length, String encoding) {
+        if (httpClient != null) {
+            return sendWithHttpClient(body, length, encoding);
+        }
+        return sendWithUrlConnection(body, length, encoding);
+    }
+
+    /**
+     * Build the shared HttpClient, applying the configured connect timeout and proxy.
+     */
+    private HttpClient buildHttpClient() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2);
+
+        if (config.getConnectTimeout() > 0) {
+            builder.connectTimeout(Duration.ofMillis(config.getConnectTimeout()));
+        }
+
+        if (config.hasProxy()) {
+            builder.proxy(ProxySelector.of(new InetSocketAddress(config.getProxyHost(), config.getProxyPort())));
+            if (Endpoint.hasProxyCredentials(config)) {
+                builder.authenticator(new ProxyAuthenticator(config.getProxyUsername(), config.getProxyPassword()));
+            }
+        }
+
+        return builder.build();
+    }
+
+    private Response sendWithHttpClient(byte[] body, int length, String encoding) {
+        try {
+            HttpRequest.Builder request = endpoint.newRequest()
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body, 0, length));
+            if (encoding != null) {
+                request.header("Content-Encoding", encoding);
+            }
+
+            HttpResponse<String> response = httpClient.send(request.build(),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            String retryAfter = response.headers().firstValue("Retry-After").orElse(null);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Response: " + response.statusCode() + " - " + response.body());
+            }
+
+            return new Response(response.statusCode(), response.body(), retryAfter,
+                rateLimitHeaders(name -> response.headers().firstValue(name).orElse(null)));
+
+        } catch (IOException e) {
+            logger.error("Error sending notice: " + e.getMessage());
+            return new Response(0, e.getMessage(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Response(0, "Interrupted", null);
+        }
+    }
+
+    private Response sendWithUrlConnection(byte[] body, int length, String encoding) {
         HttpURLConnection connection = null;
         try {
-            String url = config.getEndpoint() + "/ingest/v1/errors";
-            connection = openConnection(url);
-            connection.setRequestMethod("POST");
-            connection.setConnectTimeout(config.getConnectTimeout());
-            connection.setReadTimeout(config.getReadTimeout());
-            connection.setDoOutput(true);
-
-            // Set headers
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("Checkend-Ingestion-Key", config.getApiKey());
-            connection.setRequestProperty("User-Agent", "checkend-java/" + SDK_VERSION);
-
-            // Add proxy authentication header if needed
-            addProxyAuthHeader(connection);
-
-            // Write body
-            String body = toJson(notice.toMap());
+            connection = endpoint.openConnection();
+            connection.setFixedLengthStreamingMode(length);
+            if (encoding != null) {
+                connection.setRequestProperty("Content-Encoding", encoding);
+            }
+
+            // Write body straight to the socket; fixed-length mode skips HttpURLConnection's own buffering
             try (OutputStream os = connection.getOutputStream()) {
-                os.write(body.getBytes(StandardCharsets.UTF_8));
+                os.write(body, 0, length);
             }
 
             // Read response
@@ -53,9 +187,11 @@ public final class Client {
             String responseBody = readResponse(connection, statusCode);
             String retryAfter = connection.getHeaderField("Retry-After");
 
-            logger.debug("Response: " + statusCode + " - " + responseBody);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Response: " + statusCode + " - " + responseBody);
+            }
 
-            return new Response(statusCode, responseBody, retryAfter);
+            return new Response(statusCode, responseBody, retryAfter, rateLimitHeaders(connection::getHeaderField));
 
         } catch (IOException e) {
             logger.error("Error sending notice: " + e.getMessage());
@@ -68,34 +204,20 @@ public final class Client {
     }
 
     /**
-     * Open a connection, optionally through a proxy.
-     */
-    private HttpURLConnection openConnection(String url) throws IOException {
-        URI uri = URI.create(url);
-        URL urlObj = uri.toURL();
-
-        if (config.hasProxy()) {
-            Proxy proxy = new Proxy(
-                Proxy.Type.HTTP,
-                new InetSocketAddress(config.getProxyHost(), config.getProxyPort())
-            );
-            logger.debug("Using proxy: " + config.getProxyHost() + ":" + config.getProxyPort());
-            return (HttpURLConnection) urlObj.openConnection(proxy);
-        }
-
-        return (HttpURLConnection) urlObj.openConnection();
-    }
-
-    /**
-     * Add proxy authentication header if credentials are configured.
+     * Collect the rate-limit headers of a response, keyed by lower-case name.
      */
-    private void addProxyAuthHeader(HttpURLConnection connection) {
-        if (config.hasProxy() && config.getProxyUsername() != null && !config.getProxyUsername().isEmpty()) {
-            String auth = config.getProxyUsername() + ":" +
-                (config.getProxyPassword() != null ? config.getProxyPassword() : "");
-            String encoded = Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
-            connection.setRequestProperty("Proxy-Authorization", "Basic " + encoded);
+    private static Map<String, String> rateLimitHeaders(Function<String, String> header) {
+        Map<String, String> found = null;
+        for (String name : RATE_LIMIT_HEADERS) {
+            String value = header.apply(name);
+            if (value != null) {
+                if (found == null) {
+                    found = new HashMap<>();
+                }
+                found.put(name, value);
+            }
         }
+        return found != null ? found : Map.of();
     }
 
     private String readResponse(HttpURLConnection connection, int statusCode) throws IOException {
@@ -114,75 +236,37 @@ public final class Client {
     }
 
     /**
-     * Simple JSON serialization without external dependencies.
+     * Answers proxy authentication challenges (needed for HTTPS tunnels through an authenticating proxy).
      */
-    @SuppressWarnings("unchecked")
-    private String toJson(Object obj) {
-        if (obj == null) {
-            return "null";
-        }
-        if (obj instanceof String) {
-            return "\"" + escapeJson((String) obj) + "\"";
-        }
-        if (obj instanceof Number || obj instanceof Boolean) {
-            return obj.toString();
-        }
-        if (obj instanceof Map) {
-            Map<?, ?> map = (Map<?, ?>) obj;
-            StringBuilder sb = new StringBuilder("{");
-            boolean first = true;
-            for (Map.Entry<?, ?> entry : map.entrySet()) {
-                if (!first) sb.append(",");
-                first = false;
-                sb.append("\"").append(escapeJson(entry.getKey().toString())).append("\":");
-                sb.append(toJson(entry.getValue()));
-            }
-            sb.append("}");
-            return sb.toString();
-        }
-        if (obj instanceof Iterable) {
-            Iterable<?> list = (Iterable<?>) obj;
-            StringBuilder sb = new StringBuilder("[");
-            boolean first = true;
-            for (Object item : list) {
-                if (!first) sb.append(",");
-                first = false;
-                sb.append(toJson(item));
-            }
-            sb.append("]");
-            return sb.toString();
+    private static final class ProxyAuthenticator extends Authenticator {
+        private final String username;
+        private final char[] password;
+
+        ProxyAuthenticator(String username, String password) {
+            this.username = username;
+            this.password = password != null ? password.toCharArray() : new char[0];
         }
-        return "\"" + escapeJson(obj.toString()) + "\"";
-    }
 
-    private String escapeJson(String s) {
-        if (s == null) return "";
-        StringBuilder sb = new StringBuilder();
-        for (char c : s.toCharArray()) {
-            switch (c) {
-                case '"' -> sb.append("\\\"");
-                case '\\' -> sb.append("\\\\");
-                case '\b' -> sb.append("\\b");
-                case '\f' -> sb.append("\\f");
-                case '\n' -> sb.append("\\n");
-                case '\r' -> sb.append("\\r");
-                case '\t' -> sb.append("\\t");
-                default -> {
-                    if (c < 32) {
-                        sb.append(String.format("\\u%04x", (int) c));
-                    } else {
-                        sb.append(c);
-                    }
-                }
+        @Override
+        protected PasswordAuthentication getPasswordAuthentication() {
+            if (getRequestorType() != RequestorType.PROXY) {
+                return null;
             }
+            return new PasswordAuthentication(username, password.clone());
         }
-        return sb.toString();
     }
 
     /**
      * Response from the Checkend API.
+     *
+     * @param headers the rate-limit headers of the response ({@code ratelimit-*} and
+     *                {@code x-ratelimit-*}), keyed by lower-case name
      */
-    public record Response(int statusCode, String body, String retryAfter) {
+    public record Response(int statusCode, String body, String retryAfter, Map<String, String> headers) {
+        public Response(int statusCode, String body, String retryAfter) {
+            this(statusCode, body, retryAfter, Map.of());
+        }
+
         public boolean isSuccess() {
             return statusCode >= 200 && statusCode < 300;
         }
@@ -193,17 +277,59 @@ public final class Client {
 
         /**
          * Get retry-after delay in milliseconds, or default if not specified.
+         * Accepts both forms of the header: delay in seconds, or an HTTP-date.
          */
         public long getRetryAfterMs(long defaultMs) {
-            if (retryAfter == null || retryAfter.isEmpty()) {
+            return getRetryAfterMs(defaultMs, Instant.now());
+        }
+
+        long getRetryAfterMs(long defaultMs, Instant now) {
+            if (retryAfter == null || retryAfter.isBlank()) {
                 return defaultMs;
             }
+            String value = retryAfter.trim();
             try {
-                // Retry-After can be seconds or HTTP-date; we only support seconds
-                return Long.parseLong(retryAfter) * 1000;
+                return Math.max(0, Long.parseLong(value) * 1000);
             } catch (NumberFormatException e) {
+                // Not a number; try an HTTP-date such as "Wed, 21 Oct 2015 07:28:00 GMT"
+            }
+            try {
+                Instant retryAt = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                return Math.max(0, Duration.between(now, retryAt).toMillis());
+            } catch (DateTimeParseException e) {
                 return defaultMs;
             }
         }
+
+        /**
+         * Get the per-notice status codes returned for a batch request.
+         * The server reports these either as a top-level array or under a {@code results} key,
+         * one object with a numeric {@code status} per notice, in request order.
+         * @return the status codes, or an empty list if the body carries no per-notice results
+         */
+        public List<Integer> itemStatuses() {
+            if (body == null || body.isEmpty()) {
+                return List.of();
+            }
+            Object parsed;
+            try {
+                parsed = JsonReader.parse(body);
+            } catch (IllegalArgumentException e) {
+                return List.of();
+            }
+            Object results = parsed instanceof Map<?, ?> map ? map.get("results") : parsed;
+            if (!(results instanceof List<?> items)) {
+                return List.of();
+            }
+            List<Integer> statuses = new ArrayList<>(items.size());
+            for (Object item : items) {
+                Object status = item instanceof Map<?, ?> map ? map.get("status") : null;
+                if (!(status instanceof Number number)) {
+                    return List.of();
+                }
+                statuses.add(number.intValue());
+            }
+            return statuses;
+        }
     }
 }
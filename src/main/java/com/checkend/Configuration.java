@@ -1,5 +1,6 @@
 package com.checkend;
 
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Function;
 import java.util.regex.Pattern;
@@ -14,6 +15,14 @@ public final class Configuration {
     private static final int DEFAULT_READ_TIMEOUT = 15000;
     private static final int DEFAULT_MAX_QUEUE_SIZE = 1000;
     private static final int DEFAULT_SHUTDOWN_TIMEOUT = 5000;
+    private static final int DEFAULT_BATCH_SIZE = 1;
+    private static final int DEFAULT_BATCH_LINGER_MS = 100;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 1;
+    private static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    private static final int DEFAULT_SPOOL_SIZE = 8 * 1024 * 1024;
+    private static final int DEFAULT_OVERFLOW_BLOCK_TIMEOUT_MS = 100;
+    private static final int DEFAULT_DEDUP_MAX_FINGERPRINTS = 1000;
+    private static final long DEFAULT_SAMPLING_PERIOD_MS = 60_000;
     private static final Set<String> DEFAULT_FILTER_KEYS = Set.of(
         "password", "password_confirmation", "secret", "secret_key",
         "api_key", "apikey", "access_token", "auth_token", "authorization",
@@ -27,12 +36,33 @@ public final class Configuration {
     private final boolean enabled;
     private final boolean asyncSend;
     private final int maxQueueSize;
+    private final long maxQueueBytes;
+    private final int batchSize;
+    private final int batchLingerMs;
+    private final int maxInFlight;
+    private final boolean virtualThreads;
+    private final Path spoolPath;
+    private final int spoolSize;
+    private final OverflowPolicy overflowPolicy;
+    private final int overflowBlockTimeoutMs;
+    private final double rateLimit;
+    private final double rateLimitPerErrorClass;
+    private final long dedupWindowMs;
+    private final int dedupMaxFingerprints;
+    private final Fingerprinter fingerprinter;
+    private final int samplingKeepFirst;
+    private final long samplingPeriodMs;
+    private final boolean deferredBuild;
     private final boolean debug;
 
     // Timeout settings
     private final int connectTimeout;
     private final int readTimeout;
     private final int shutdownTimeout;
+    private final boolean legacyHttpClient;
+    private final Transport transport;
+    private final boolean compression;
+    private final int compressionThreshold;
 
     // Proxy settings
     private final String proxyHost;
@@ -65,12 +95,33 @@ public final class Configuration {
         this.enabled = builder.enabled;
         this.asyncSend = builder.asyncSend;
         this.maxQueueSize = builder.maxQueueSize;
+        this.maxQueueBytes = builder.maxQueueBytes;
+        this.batchSize = builder.batchSize;
+        this.batchLingerMs = builder.batchLingerMs;
+        this.maxInFlight = builder.maxInFlight;
+        this.virtualThreads = builder.virtualThreads;
+        this.spoolPath = builder.spoolPath;
+        this.spoolSize = builder.spoolSize;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.overflowBlockTimeoutMs = builder.overflowBlockTimeoutMs;
+        this.rateLimit = builder.rateLimit;
+        this.rateLimitPerErrorClass = builder.rateLimitPerErrorClass;
+        this.dedupWindowMs = builder.dedupWindowMs;
+        this.dedupMaxFingerprints = builder.dedupMaxFingerprints;
+        this.fingerprinter = builder.fingerprinter;
+        this.samplingKeepFirst = builder.samplingKeepFirst;
+        this.samplingPeriodMs = builder.samplingPeriodMs;
+        this.deferredBuild = builder.deferredBuild;
         this.debug = builder.debug;
 
         // Timeout settings
         this.connectTimeout = builder.connectTimeout;
         this.readTimeout = builder.readTimeout;
         this.shutdownTimeout = builder.shutdownTimeout;
+        this.legacyHttpClient = builder.legacyHttpClient;
+        this.transport = builder.transport;
+        this.compression = builder.compression;
+        this.compressionThreshold = builder.compressionThreshold;
 
         // Proxy settings
         this.proxyHost = builder.proxyHost;
@@ -103,12 +154,33 @@ public final class Configuration {
     public boolean isEnabled() { return enabled; }
     public boolean isAsyncSend() { return asyncSend; }
     public int getMaxQueueSize() { return maxQueueSize; }
+    public long getMaxQueueBytes() { return maxQueueBytes; }
+    public int getBatchSize() { return batchSize; }
+    public int getBatchLingerMs() { return batchLingerMs; }
+    public int getMaxInFlight() { return maxInFlight; }
+    public boolean isVirtualThreads() { return virtualThreads; }
+    public Path getSpoolPath() { return spoolPath; }
+    public int getSpoolSize() { return spoolSize; }
+    public OverflowPolicy getOverflowPolicy() { return overflowPolicy; }
+    public int getOverflowBlockTimeoutMs() { return overflowBlockTimeoutMs; }
+    public double getRateLimit() { return rateLimit; }
+    public double getRateLimitPerErrorClass() { return rateLimitPerErrorClass; }
+    public long getDedupWindowMs() { return dedupWindowMs; }
+    public int getDedupMaxFingerprints() { return dedupMaxFingerprints; }
+    public Fingerprinter getFingerprinter() { return fingerprinter; }
+    public int getSamplingKeepFirst() { return samplingKeepFirst; }
+    public long getSamplingPeriodMs() { return samplingPeriodMs; }
+    public boolean isDeferredBuild() { return deferredBuild; }
     public boolean isDebug() { return debug; }
 
     // Timeout getters
     public int getConnectTimeout() { return connectTimeout; }
     public int getReadTimeout() { return readTimeout; }
     public int getShutdownTimeout() { return shutdownTimeout; }
+    public boolean isLegacyHttpClient() { return legacyHttpClient; }
+    public Transport getTransport() { return transport; }
+    public boolean isCompression() { return compression; }
+    public int getCompressionThreshold() { return compressionThreshold; }
 
     /**
      * @deprecated Use {@link #getConnectTimeout()} and {@link #getReadTimeout()} instead.
@@ -151,12 +223,33 @@ public final class Configuration {
         private boolean enabled = true;
         private boolean asyncSend = true;
         private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+        private long maxQueueBytes;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private int batchLingerMs = DEFAULT_BATCH_LINGER_MS;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private boolean virtualThreads = false;
+        private Path spoolPath;
+        private int spoolSize = DEFAULT_SPOOL_SIZE;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+        private int overflowBlockTimeoutMs = DEFAULT_OVERFLOW_BLOCK_TIMEOUT_MS;
+        private double rateLimit;
+        private double rateLimitPerErrorClass;
+        private long dedupWindowMs;
+        private int dedupMaxFingerprints = DEFAULT_DEDUP_MAX_FINGERPRINTS;
+        private Fingerprinter fingerprinter = Fingerprinter.DEFAULT;
+        private int samplingKeepFirst;
+        private long samplingPeriodMs = DEFAULT_SAMPLING_PERIOD_MS;
+        private boolean deferredBuild = false;
         private boolean debug = false;
 
         // Timeout settings
         private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
         private int readTimeout = DEFAULT_READ_TIMEOUT;
         private int shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+        private boolean legacyHttpClient = false;
+        private Transport transport;
+        private boolean compression = false;
+        private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
 
         // Proxy settings
         private String proxyHost;
@@ -310,6 +403,167 @@ public final class Configuration {
             return this;
         }
 
+        /**
+         * Cap the total size of notices waiting to be sent, including those in flight or
+         * awaiting a retry (default: 0, no limit besides {@link #maxQueueSize(int)}).
+         * Sizes are the serialized size when a spool is configured and an estimate otherwise.
+         */
+        public Builder maxQueueBytes(long maxQueueBytes) {
+            this.maxQueueBytes = maxQueueBytes;
+            return this;
+        }
+
+        /**
+         * Maximum number of queued notices sent together in one request.
+         * The default of 1 sends each notice on its own.
+         */
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * How long the worker waits for a batch to fill up before sending what it has.
+         */
+        public Builder batchLingerMs(int batchLingerMs) {
+            this.batchLingerMs = batchLingerMs;
+            return this;
+        }
+
+        /**
+         * Maximum number of requests the worker keeps in flight at once.
+         * The default of 1 sends strictly one request at a time.
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Send each request on its own virtual thread, still at most {@link #maxInFlight(int)}
+         * at a time. Needs Java 21 or later; on older JVMs the worker logs a warning and uses
+         * platform threads.
+         */
+        public Builder virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * What to do with a notice when the queue is full (default: drop it).
+         */
+        public Builder overflowPolicy(OverflowPolicy policy) {
+            this.overflowPolicy = policy;
+            return this;
+        }
+
+        /**
+         * What to do with a notice when the queue is full, waiting up to {@code blockTimeoutMs}
+         * for room with {@link OverflowPolicy#BLOCK} (default: 100ms).
+         */
+        public Builder overflowPolicy(OverflowPolicy policy, int blockTimeoutMs) {
+            this.overflowPolicy = policy;
+            this.overflowBlockTimeoutMs = blockTimeoutMs;
+            return this;
+        }
+
+        /**
+         * Also record queued notices in an 8 MB memory-mapped file, so notices still unsent
+         * when the process stops are sent by the next worker using the same file.
+         */
+        public Builder spool(Path path) {
+            this.spoolPath = path;
+            return this;
+        }
+
+        /**
+         * Also record queued notices in a memory-mapped file of {@code sizeBytes}, so notices
+         * still unsent when the process stops are sent by the next worker using the same file.
+         */
+        public Builder spool(Path path, int sizeBytes) {
+            this.spoolPath = path;
+            this.spoolSize = sizeBytes;
+            return this;
+        }
+
+        /**
+         * Report at most {@code noticesPerSecond} errors per second, with bursts of up to one
+         * second's worth (default: 0, no limit), whether sent asynchronously or not. Errors over
+         * the limit are counted and summarized in the log before a notice is built for them.
+         */
+        public Builder rateLimit(double noticesPerSecond) {
+            this.rateLimit = noticesPerSecond;
+            return this;
+        }
+
+        /**
+         * Report at most {@code noticesPerSecond} errors per second of each error class, on top
+         * of {@link #rateLimit(double)} (default: 0, no limit).
+         */
+        public Builder rateLimitPerErrorClass(double noticesPerSecond) {
+            this.rateLimitPerErrorClass = noticesPerSecond;
+            return this;
+        }
+
+        /**
+         * Collapse repeats of the same error (same class and top stack frames) reported through
+         * {@link Checkend#notify(Throwable)} within {@code windowMs} into one notice carrying the
+         * number of occurrences (default: 0, off). The notice is sent when the window closes.
+         */
+        public Builder dedupWindow(long windowMs) {
+            this.dedupWindowMs = windowMs;
+            return this;
+        }
+
+        /**
+         * Collapse repeats within {@code windowMs}, tracking at most {@code maxFingerprints}
+         * distinct errors at a time (default: 1000); past that the oldest window closes early.
+         */
+        public Builder dedupWindow(long windowMs, int maxFingerprints) {
+            this.dedupWindowMs = windowMs;
+            this.dedupMaxFingerprints = maxFingerprints;
+            return this;
+        }
+
+        /**
+         * How to recognize repeats of the same error for deduplication and
+         * {@link OverflowPolicy#DROP_MOST_DUPLICATED} (default: {@link Fingerprinter#DEFAULT}).
+         */
+        public Builder fingerprinter(Fingerprinter fingerprinter) {
+            this.fingerprinter = fingerprinter;
+            return this;
+        }
+
+        /**
+         * Report every one of the first {@code keepFirst} occurrences of an error per minute
+         * through {@link Checkend#notify(Throwable)}, then one in 2, 4, and so on up to one in
+         * 1024, each carrying its sample weight (default: 0, report all).
+         */
+        public Builder sampling(int keepFirst) {
+            this.samplingKeepFirst = keepFirst;
+            return this;
+        }
+
+        /**
+         * Sample as {@link #sampling(int)}, starting over every {@code periodMs} instead of every minute.
+         */
+        public Builder sampling(int keepFirst, long periodMs) {
+            this.samplingKeepFirst = keepFirst;
+            this.samplingPeriodMs = periodMs;
+            return this;
+        }
+
+        /**
+         * Have {@link Checkend#notify(Throwable)} only take a snapshot of the error and the
+         * thread's context, and build, sanitize and run before_notify callbacks on a worker
+         * thread (default: false). Applies with {@link #asyncSend(boolean)} only; see
+         * {@link NoticeBuilder} for what the snapshot guarantees.
+         */
+        public Builder deferredBuild(boolean deferredBuild) {
+            this.deferredBuild = deferredBuild;
+            return this;
+        }
+
         public Builder debug(boolean debug) {
             this.debug = debug;
             return this;
@@ -331,6 +585,40 @@ public final class Configuration {
             return this;
         }
 
+        /**
+         * Use a new {@link java.net.HttpURLConnection} per notice instead of the shared,
+         * keep-alive {@link java.net.http.HttpClient}.
+         */
+        public Builder legacyHttpClient(boolean legacyHttpClient) {
+            this.legacyHttpClient = legacyHttpClient;
+            return this;
+        }
+
+        /**
+         * Deliver notices through a custom transport instead of the HTTP {@link Client}.
+         */
+        public Builder transport(Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Gzip request bodies of at least 1 KB and send them with {@code Content-Encoding: gzip}.
+         */
+        public Builder compression(boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * Gzip request bodies of at least {@code thresholdBytes} and send them with {@code Content-Encoding: gzip}.
+         */
+        public Builder compression(boolean compression, int thresholdBytes) {
+            this.compression = compression;
+            this.compressionThreshold = thresholdBytes;
+            return this;
+        }
+
         /**
          * @deprecated Use {@link #connectTimeout(int)} and {@link #readTimeout(int)} instead.
          */
@@ -0,0 +1,183 @@
+package com.checkend;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collapses repeats of the same error within a time window into a single notice.
+ *
+ * <p>The first occurrence of an error opens a window and is held; further occurrences with
+ * the same {@link Fingerprinter fingerprint} only bump its count, without
+ * building a notice. When the window closes, the first notice is sent carrying the number of
+ * occurrences and when the first and last were seen. Occurrences kept by the {@link Sampler}
+ * count with their sample weight, so the number sent is the extrapolated one. The number of
+ * open windows is capped; opening one more closes the oldest early.
+ */
+final class Deduplicator implements AutoCloseable {
+    private final long windowMs;
+    private final int maxWindows;
+    private final Consumer<Notice> sink;
+    private final Map<Long, Window> windows = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+    private volatile boolean closed;
+
+    Deduplicator(long windowMs, int maxWindows, Consumer<Notice> sink) {
+        this.windowMs = windowMs;
+        this.maxWindows = Math.max(1, maxWindows);
+        this.sink = sink;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkend-dedup");
+            t.setDaemon(true);
+            return t;
+        });
+        long tickMs = Math.max(10, Math.min(windowMs / 4, 1000));
+        timer.scheduleWithFixedDelay(this::closeExpired, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Count an occurrence standing for {@code weight} occurrences against the open window for
+     * this fingerprint, if there is one.
+     *
+     * @return true if the occurrence was counted and needs no notice of its own
+     */
+    boolean absorb(long fingerprint, long weight) {
+        Window window = windows.get(fingerprint);
+        return window != null && window.record(System.currentTimeMillis(), weight);
+    }
+
+    /**
+     * Open a window for this fingerprint with the notice of its first occurrence, or count the
+     * notice against a window another thread opened meanwhile. Once closed, the notice is
+     * passed straight on.
+     */
+    void open(long fingerprint, Notice notice) {
+        if (closed) {
+            sink.accept(notice);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Window window = new Window(fingerprint, notice, now);
+        while (true) {
+            Window existing = windows.putIfAbsent(fingerprint, window);
+            if (existing == null) {
+                break;
+            }
+            if (existing.record(now, notice.getSampleWeight())) {
+                return;
+            }
+            // Closed concurrently; it is on its way out of the map
+            windows.remove(fingerprint, existing);
+        }
+        if (closed) {
+            // Closed while opening; make sure the window is not left behind
+            closeWindow(window);
+        } else if (windows.size() > maxWindows) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        Window oldest = null;
+        for (Window window : windows.values()) {
+            if (oldest == null || window.openedAt < oldest.openedAt) {
+                oldest = window;
+            }
+        }
+        if (oldest != null) {
+            closeWindow(oldest);
+        }
+    }
+
+    private void closeExpired() {
+        long cutoff = System.currentTimeMillis() - windowMs;
+        for (Window window : windows.values()) {
+            if (window.openedAt <= cutoff) {
+                closeWindow(window);
+            }
+        }
+    }
+
+    /**
+     * Close every open window now, sending its notice.
+     */
+    void flush() {
+        for (Window window : windows.values()) {
+            closeWindow(window);
+        }
+    }
+
+    private void closeWindow(Window window) {
+        Notice notice = window.close();
+        windows.remove(window.fingerprint, window);
+        if (notice != null) {
+            sink.accept(notice);
+        }
+    }
+
+    /**
+     * Number of windows currently open.
+     */
+    int size() {
+        return windows.size();
+    }
+
+    /**
+     * Stop the timer and send the notices of all open windows. Notices opened afterwards are
+     * sent right away.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        timer.shutdownNow();
+        flush();
+    }
+
+    private static final class Window {
+        private final long fingerprint;
+        private final Notice notice;
+        private final long openedAt;
+        private long occurrences;
+        private boolean repeated;
+        private long lastSeenAt;
+        private boolean closed;
+
+        Window(long fingerprint, Notice notice, long now) {
+            this.fingerprint = fingerprint;
+            this.notice = notice;
+            this.openedAt = now;
+            this.lastSeenAt = now;
+            this.occurrences = notice.getSampleWeight();
+        }
+
+        synchronized boolean record(long now, long weight) {
+            if (closed) {
+                return false;
+            }
+            occurrences += weight;
+            repeated = true;
+            lastSeenAt = Math.max(lastSeenAt, now);
+            return true;
+        }
+
+        /**
+         * @return the notice to send, or null if the window was already closed
+         */
+        synchronized Notice close() {
+            if (closed) {
+                return null;
+            }
+            closed = true;
+            if (repeated) {
+                notice.setOccurrences(occurrences, Instant.ofEpochMilli(openedAt), Instant.ofEpochMilli(lastSeenAt));
+                // The occurrences are already extrapolated
+                notice.setSampleWeight(1);
+            }
+            return notice;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.checkend;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The worker's builder thread for {@link Configuration#isDeferredBuild() deferred building},
+ * which builds and queues the notices handed over unbuilt so that reporting threads stay out
+ * of the work. Its backlog holds up to maxQueueSize notices.
+ */
+final class DeferredBuilder {
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger building = new AtomicInteger();
+    private final Pending pending;
+    private final Logger logger;
+
+    DeferredBuilder(int capacity, Pending pending, Logger logger) {
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, capacity)), r -> {
+                Thread t = new Thread(r, "checkend-builder");
+                t.setDaemon(true);
+                return t;
+            });
+        this.pending = pending;
+        this.logger = logger;
+    }
+
+    /**
+     * Run {@code build} on the builder thread. Until it has run, it counts as pending.
+     *
+     * @return false if the backlog is full or the builder stopped, leaving the build to the caller
+     */
+    boolean defer(Runnable build) {
+        pending.add();
+        building.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    build.run();
+                } catch (RuntimeException e) {
+                    logger.error("Error building notice", e);
+                } finally {
+                    building.decrementAndGet();
+                    pending.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            building.decrementAndGet();
+            pending.release();
+            return false;
+        }
+    }
+
+    /**
+     * Wait up to {@code timeoutMs} for the notices handed to {@link #defer(Runnable)} to be built.
+     *
+     * @return false if some were still being built when the timeout passed
+     */
+    boolean awaitBuilt(long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (building.get() > 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(remaining, 1_000_000));
+        }
+        return true;
+    }
+
+    /**
+     * Stop taking notices and wait until {@code deadline} for those already handed over.
+     */
+    void stop(long deadline) {
+        Worker.awaitShutdown(executor, deadline);
+    }
+}
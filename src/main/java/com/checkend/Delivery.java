@@ -0,0 +1,111 @@
+package com.checkend;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A queued notice together with whoever is waiting on its outcome.
+ */
+final class Delivery {
+    private final Notice notice;
+    private final CompletableFuture<Client.Response> future;
+    private Spool spool;
+    private Spool.Entry spoolEntry;
+    private long size;
+    private AtomicLong reservedBytes;
+    private Pending pending;
+    private int failedAttempts;
+    private volatile boolean dequeued;
+
+    Delivery(Notice notice) {
+        this(notice, null);
+    }
+
+    Delivery(Notice notice, CompletableFuture<Client.Response> future) {
+        this.notice = notice;
+        this.future = future;
+    }
+
+    Notice notice() {
+        return notice;
+    }
+
+    /**
+     * Remember the spool record holding this notice, to release once it is done with.
+     */
+    void spooled(Spool spool, Spool.Entry entry) {
+        this.spool = spool;
+        this.spoolEntry = entry;
+    }
+
+    /**
+     * Mark the notice as taken off the queue, to be sent or dropped.
+     */
+    void dequeued() {
+        dequeued = true;
+    }
+
+    boolean isDequeued() {
+        return dequeued;
+    }
+
+    /**
+     * Record a failed attempt to send this notice.
+     *
+     * @return the number of failed attempts so far
+     */
+    int recordFailedAttempt() {
+        return ++failedAttempts;
+    }
+
+    /**
+     * Count this notice as pending until it is settled.
+     */
+    void tracked(Pending pending) {
+        pending.add();
+        this.pending = pending;
+    }
+
+    /**
+     * Size of the notice counted against the queue's byte limit.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Remember that {@code size} bytes of {@code counter} are held for this notice until it is done with.
+     */
+    void reserved(AtomicLong counter, long size) {
+        this.reservedBytes = counter;
+        this.size = size;
+    }
+
+    /**
+     * Report the final outcome: acknowledged, dropped, or retries exhausted.
+     */
+    void complete(Client.Response response) {
+        if (spoolEntry != null) {
+            spool.release(spoolEntry);
+        }
+        abandon(response);
+    }
+
+    /**
+     * Report that the notice was not sent because the worker stopped. Unlike
+     * {@link #complete(Client.Response)}, its spool record is kept for the next run to replay.
+     */
+    void abandon(Client.Response response) {
+        if (reservedBytes != null) {
+            reservedBytes.addAndGet(-size);
+            reservedBytes = null;
+        }
+        if (pending != null) {
+            pending.settle(response != null && response.isSuccess());
+            pending = null;
+        }
+        if (future != null) {
+            future.complete(response);
+        }
+    }
+}
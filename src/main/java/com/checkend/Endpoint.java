@@ -0,0 +1,123 @@
+package com.checkend;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Request constants for the ingest API, derived from a {@link Configuration} once and
+ * shared by every send: the parsed URL, proxy, encoded proxy credentials and a request
+ * template carrying the fixed headers and timeout.
+ */
+final class Endpoint {
+    static final String INGEST_PATH = "/ingest/v1/errors";
+    private static final String USER_AGENT = "checkend-java/" + Client.SDK_VERSION;
+
+    private final URI uri;
+    private final URL url;
+    private final String invalidReason;
+    private final Proxy proxy;
+    private final String proxyAuthorization;
+    private final String apiKey;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final HttpRequest.Builder requestTemplate;
+
+    Endpoint(Configuration config) {
+        URI parsedUri = null;
+        URL parsedUrl = null;
+        String reason = null;
+        try {
+            parsedUri = URI.create(config.getEndpoint() + INGEST_PATH);
+            parsedUrl = parsedUri.toURL();
+        } catch (IllegalArgumentException | MalformedURLException e) {
+            reason = "Invalid endpoint " + config.getEndpoint() + ": " + e.getMessage();
+        }
+        this.uri = reason == null ? parsedUri : null;
+        this.url = parsedUrl;
+        this.invalidReason = reason;
+
+        this.proxy = config.hasProxy()
+            ? new Proxy(Proxy.Type.HTTP, new InetSocketAddress(config.getProxyHost(), config.getProxyPort()))
+            : null;
+        this.proxyAuthorization = proxyAuthorization(config);
+        this.apiKey = config.getApiKey();
+        this.connectTimeout = config.getConnectTimeout();
+        this.readTimeout = config.getReadTimeout();
+        this.requestTemplate = uri != null ? requestTemplate() : null;
+    }
+
+    private static String proxyAuthorization(Configuration config) {
+        if (!hasProxyCredentials(config)) {
+            return null;
+        }
+        String auth = config.getProxyUsername() + ":" +
+            (config.getProxyPassword() != null ? config.getProxyPassword() : "");
+        return "Basic " + Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static boolean hasProxyCredentials(Configuration config) {
+        return config.hasProxy() && config.getProxyUsername() != null && !config.getProxyUsername().isEmpty();
+    }
+
+    private HttpRequest.Builder requestTemplate() {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+            .header("Content-Type", "application/json")
+            .header("Checkend-Ingestion-Key", apiKey)
+            .header("User-Agent", USER_AGENT);
+
+        // HttpURLConnection's read timeout has no direct equivalent; bound the whole exchange instead
+        if (readTimeout > 0) {
+            builder.timeout(Duration.ofMillis(readTimeout));
+        }
+
+        // No Proxy-Authorization here: HttpClient drops it and answers the proxy's challenge
+        // through the authenticator Client installs instead
+        return builder;
+    }
+
+    /**
+     * Get a fresh request builder with the fixed headers and timeout already applied.
+     */
+    HttpRequest.Builder newRequest() throws IOException {
+        if (requestTemplate == null) {
+            throw new IOException(invalidReason);
+        }
+        return requestTemplate.copy();
+    }
+
+    /**
+     * Open a POST connection, through the proxy if configured, with the fixed headers and timeouts applied.
+     */
+    HttpURLConnection openConnection() throws IOException {
+        if (url == null) {
+            throw new IOException(invalidReason);
+        }
+        HttpURLConnection connection = (HttpURLConnection) (proxy != null
+            ? url.openConnection(proxy)
+            : url.openConnection());
+        connection.setRequestMethod("POST");
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("Checkend-Ingestion-Key", apiKey);
+        connection.setRequestProperty("User-Agent", USER_AGENT);
+        if (proxyAuthorization != null) {
+            connection.setRequestProperty("Proxy-Authorization", proxyAuthorization);
+        }
+        return connection;
+    }
+
+    URI uri() {
+        return uri;
+    }
+}
@@ -0,0 +1,74 @@
+package com.checkend;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Transport that appends notices to a file as newline-delimited JSON (NDJSON),
+ * one notice per line in the same format the HTTP transport sends.
+ * Useful for handing notices to a local relay or log shipper.
+ */
+public final class FileTransport implements Transport {
+    private final Path path;
+    private final JsonWriter writer = new JsonWriter();
+    private OutputStream out;
+
+    public FileTransport(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public Client.Response send(Notice notice) {
+        return sendBatch(List.of(notice));
+    }
+
+    @Override
+    public synchronized Client.Response sendBatch(List<Notice> notices) {
+        writer.reset();
+        for (Notice notice : notices) {
+            notice.writeJson(writer);
+            writer.newline();
+        }
+        try {
+            if (out == null) {
+                out = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.writeTo(out);
+            out.flush();
+            return new Client.Response(201, "", null);
+        } catch (IOException e) {
+            closeQuietly();
+            return new Client.Response(0, e.getMessage(), null);
+        }
+    }
+
+    /**
+     * Get the file notices are written to.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Close the file. It is reopened if more notices are sent afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // Nothing useful to do; the next send reopens the file
+            }
+            out = null;
+        }
+    }
+}
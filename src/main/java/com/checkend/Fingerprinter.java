@@ -0,0 +1,37 @@
+package com.checkend;
+
+/**
+ * Computes the identity used to recognize repeats of the same error in the SDK: by
+ * {@link Configuration#getSamplingKeepFirst() sampling}, the
+ * {@link Configuration#getDedupWindowMs() deduplication window} and
+ * {@link OverflowPolicy#DROP_MOST_DUPLICATED}. Notices given an explicit {@code fingerprint}
+ * option are identified by it instead.
+ *
+ * <p>Implementations are called on the reporting thread for every notice and should be cheap.
+ */
+@FunctionalInterface
+public interface Fingerprinter {
+
+    /**
+     * Built-in fingerprinter hashing the error class and the top five stack frames.
+     */
+    Fingerprinter DEFAULT = topFrames(5);
+
+    /**
+     * Compute a 64-bit key for an exception.
+     *
+     * @param stackTrace the exception's stack trace, already fetched by the caller
+     */
+    long fingerprint(Throwable exception, StackTraceElement[] stackTrace);
+
+    /**
+     * Fingerprinter hashing the error class and the class, method and line of the top
+     * {@code frames} stack frames, straight from the frames without building strings.
+     * Generated names are normalized so that the same code fingerprints the same across
+     * runs: lambda and proxy class suffixes, lambda method numbers and reflection accessor
+     * numbers are ignored.
+     */
+    static Fingerprinter topFrames(int frames) {
+        return new StackFingerprinter(frames);
+    }
+}
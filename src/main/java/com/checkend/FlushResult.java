@@ -0,0 +1,16 @@
+package com.checkend;
+
+/**
+ * Outcome of a flush: notices delivered and dropped since the previous flush, and
+ * notices still queued, in flight or awaiting a retry when the flush returned.
+ */
+public record FlushResult(long delivered, long dropped, long pending) {
+    static final FlushResult EMPTY = new FlushResult(0, 0, 0);
+
+    /**
+     * Whether every notice was settled (delivered or dropped) before the flush returned.
+     */
+    public boolean isComplete() {
+        return pending == 0;
+    }
+}
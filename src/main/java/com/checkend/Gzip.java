@@ -0,0 +1,84 @@
+package com.checkend;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Reusable gzip compressor for request bodies.
+ *
+ * <p>Instances are reused across requests through a {@link Pool}, so the native
+ * {@link Deflater} state and the output buffer are not allocated for every request; an
+ * instance that is no longer needed must be {@link #end() ended} to free the native state
+ * right away. Instances are not thread-safe.
+ */
+final class Gzip {
+    private static final int INITIAL_CAPACITY = 8192;
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    // Same header GZIPOutputStream writes: magic, deflate, no flags, no mtime, no extra flags, OS 0
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int count;
+
+    /**
+     * Free the native compressor state; the instance cannot be used afterwards.
+     */
+    void end() {
+        deflater.end();
+    }
+
+    /**
+     * Compress {@code length} bytes of {@code input} into this instance's buffer,
+     * replacing whatever it held before.
+     */
+    void compress(byte[] input, int offset, int length) {
+        if (buf.length > MAX_RETAINED_CAPACITY) {
+            buf = new byte[INITIAL_CAPACITY];
+        }
+        System.arraycopy(HEADER, 0, buf, 0, HEADER.length);
+        count = HEADER.length;
+
+        deflater.reset();
+        deflater.setInput(input, offset, length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            if (count == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            count += deflater.deflate(buf, count, buf.length - count);
+        }
+
+        crc.reset();
+        crc.update(input, offset, length);
+        ensureCapacity(8);
+        writeIntLE((int) crc.getValue());
+        writeIntLE(length);
+    }
+
+    /**
+     * The backing buffer; only the first {@link #size()} bytes are valid.
+     */
+    byte[] buffer() {
+        return buf;
+    }
+
+    int size() {
+        return count;
+    }
+
+    private void writeIntLE(int value) {
+        buf[count++] = (byte) value;
+        buf[count++] = (byte) (value >> 8);
+        buf[count++] = (byte) (value >> 16);
+        buf[count++] = (byte) (value >> 24);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (count + extra > buf.length) {
+            buf = Arrays.copyOf(buf, count + extra);
+        }
+    }
+}
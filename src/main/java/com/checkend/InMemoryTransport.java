@@ -0,0 +1,85 @@
+package com.checkend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport that keeps delivered notices in memory instead of sending them anywhere.
+ * Useful for exercising the full async pipeline (queue, batching, retries) without
+ * network noise, e.g. in benchmarks or integration tests.
+ */
+public final class InMemoryTransport implements Transport {
+    private final List<Notice> notices = new ArrayList<>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final boolean retain;
+    private long deliveredCount;
+
+    /**
+     * Create a transport that keeps every delivered notice.
+     */
+    public InMemoryTransport() {
+        this(true);
+    }
+
+    /**
+     * Create a transport that optionally only counts notices instead of keeping them,
+     * so long-running benchmarks do not accumulate memory.
+     */
+    public InMemoryTransport(boolean retain) {
+        this.retain = retain;
+    }
+
+    @Override
+    public Client.Response send(Notice notice) {
+        return sendBatch(List.of(notice));
+    }
+
+    @Override
+    public Client.Response sendBatch(List<Notice> batch) {
+        requestCount.incrementAndGet();
+        synchronized (notices) {
+            if (retain) {
+                notices.addAll(batch);
+            }
+            deliveredCount += batch.size();
+        }
+        return new Client.Response(202, "", null);
+    }
+
+    /**
+     * Get the retained notices in delivery order.
+     */
+    public List<Notice> notices() {
+        synchronized (notices) {
+            return new ArrayList<>(notices);
+        }
+    }
+
+    /**
+     * Get the number of notices delivered, whether or not they were retained.
+     */
+    public long deliveredCount() {
+        synchronized (notices) {
+            return deliveredCount;
+        }
+    }
+
+    /**
+     * Get the number of send or batch send calls made.
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Forget all delivered notices and reset the counters.
+     */
+    public void clear() {
+        synchronized (notices) {
+            notices.clear();
+            deliveredCount = 0;
+        }
+        requestCount.set(0);
+    }
+}
@@ -0,0 +1,200 @@
+package com.checkend;
+
+import java.util.*;
+
+/**
+ * Minimal JSON parser for reading API responses without external dependencies.
+ * Objects become {@link LinkedHashMap}s, arrays {@link ArrayList}s, and numbers
+ * {@link Long} or {@link Double}.
+ */
+final class JsonReader {
+    private final String json;
+    private int pos;
+
+    private JsonReader(String json) {
+        this.json = json;
+    }
+
+    /**
+     * Parse a JSON document.
+     * @throws IllegalArgumentException if the input is not valid JSON
+     */
+    static Object parse(String json) {
+        JsonReader reader = new JsonReader(json);
+        Object value = reader.readValue();
+        reader.skipWhitespace();
+        if (reader.pos != json.length()) {
+            throw reader.error("Trailing characters");
+        }
+        return value;
+    }
+
+    private Object readValue() {
+        skipWhitespace();
+        if (pos >= json.length()) {
+            throw error("Unexpected end of input");
+        }
+        char c = json.charAt(pos);
+        switch (c) {
+            case '{' -> {
+                return readObject();
+            }
+            case '[' -> {
+                return readArray();
+            }
+            case '"' -> {
+                return readString();
+            }
+            case 't' -> {
+                return readLiteral("true", Boolean.TRUE);
+            }
+            case 'f' -> {
+                return readLiteral("false", Boolean.FALSE);
+            }
+            case 'n' -> {
+                return readLiteral("null", null);
+            }
+            default -> {
+                return readNumber();
+            }
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return map;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected object key");
+            }
+            String key = readString();
+            skipWhitespace();
+            expect(':');
+            map.put(key, readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect('}');
+                return map;
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return list;
+        }
+        while (true) {
+            list.add(readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect(']');
+                return list;
+            }
+        }
+    }
+
+    private String readString() {
+        pos++;
+        StringBuilder sb = new StringBuilder();
+        while (pos < json.length()) {
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= json.length()) {
+                break;
+            }
+            char escaped = json.charAt(pos++);
+            switch (escaped) {
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    if (pos + 4 > json.length()) {
+                        throw error("Invalid unicode escape");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid unicode escape");
+                    }
+                    pos += 4;
+                }
+                default -> sb.append(escaped);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private Object readNumber() {
+        int start = pos;
+        boolean decimal = false;
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E') {
+                decimal = true;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            pos++;
+        }
+        String number = json.substring(start, pos);
+        try {
+            return decimal ? (Object) Double.parseDouble(number) : (Object) Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number");
+        }
+    }
+
+    private Object readLiteral(String literal, Object value) {
+        if (!json.startsWith(literal, pos)) {
+            throw error("Invalid literal");
+        }
+        pos += literal.length();
+        return value;
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        if (pos >= json.length()) {
+            throw error("Unexpected end of input");
+        }
+        return json.charAt(pos);
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+}
@@ -0,0 +1,359 @@
+package com.checkend;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Reusable JSON writer that encodes straight to UTF-8 bytes in a growable buffer.
+ *
+ * <p>Escaping works on individual chars and never allocates, and the buffer is kept between
+ * uses via {@link #reset()}, so serializing a notice costs no intermediate strings. The output
+ * matches {@code String.getBytes(UTF_8)} of the SDK's original string-based serializer, including
+ * lowercase hex unicode escapes for control characters and {@code ?} for unpaired surrogates.
+ *
+ * <p>Instances are not thread-safe.
+ */
+final class JsonWriter {
+    private static final int INITIAL_CAPACITY = 8192;
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int count;
+
+    // Whether the container at each depth already holds an element (and so needs a comma)
+    private boolean[] hasElements = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    /**
+     * Clear the buffer for reuse, releasing it if a previous payload made it very large.
+     */
+    void reset() {
+        if (buf.length > MAX_RETAINED_CAPACITY) {
+            buf = new byte[INITIAL_CAPACITY];
+        }
+        count = 0;
+        depth = 0;
+        afterName = false;
+    }
+
+    /**
+     * The backing buffer; only the first {@link #size()} bytes are valid.
+     */
+    byte[] buffer() {
+        return buf;
+    }
+
+    int size() {
+        return count;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    /**
+     * Reserve a 4-byte length prefix for a frame and return its position, to be passed
+     * to {@link #endFrame(int)} once the frame's payload has been written.
+     */
+    int beginFrame() {
+        ensureCapacity(4);
+        int start = count;
+        count += 4;
+        return start;
+    }
+
+    /**
+     * Fill in the big-endian length of the payload written since {@link #beginFrame()}.
+     */
+    void endFrame(int start) {
+        int length = count - start - 4;
+        buf[start] = (byte) (length >>> 24);
+        buf[start + 1] = (byte) (length >>> 16);
+        buf[start + 2] = (byte) (length >>> 8);
+        buf[start + 3] = (byte) length;
+    }
+
+    JsonWriter beginObject() {
+        beforeValue();
+        push();
+        writeByte('{');
+        return this;
+    }
+
+    JsonWriter endObject() {
+        depth--;
+        writeByte('}');
+        return this;
+    }
+
+    JsonWriter beginArray() {
+        beforeValue();
+        push();
+        writeByte('[');
+        return this;
+    }
+
+    JsonWriter endArray() {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+
+    /**
+     * Write a newline, separating top-level values as in newline-delimited JSON.
+     */
+    JsonWriter newline() {
+        writeByte('\n');
+        return this;
+    }
+
+    /**
+     * Write an object member name; the next value written becomes its value.
+     */
+    JsonWriter name(String name) {
+        beforeValue();
+        writeString(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    /**
+     * Write a string value made of two parts joined by a separator, without concatenating them first.
+     */
+    JsonWriter value(String prefix, char separator, String suffix) {
+        beforeValue();
+        ensureCapacity((prefix.length() + suffix.length()) * 6 + 4);
+        buf[count++] = '"';
+        writeStringContent(prefix);
+        if (separator >= 0x20 && separator < 0x80 && separator != '"' && separator != '\\') {
+            buf[count++] = (byte) separator;
+        } else {
+            writeStringContent(String.valueOf(separator));
+        }
+        writeStringContent(suffix);
+        buf[count++] = '"';
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    JsonWriter value(boolean value) {
+        beforeValue();
+        writeBytes(value ? TRUE : FALSE);
+        return this;
+    }
+
+    /**
+     * Write an arbitrary value: maps become objects, iterables arrays, and anything
+     * that is not a string, number or boolean is written as its {@code toString()}.
+     */
+    JsonWriter value(Object value) {
+        if (value == null) {
+            return nullValue();
+        }
+        if (value instanceof String s) {
+            return value(s);
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return value(((Number) value).longValue());
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            beforeValue();
+            writeRaw(value.toString());
+            return this;
+        }
+        if (value instanceof Map<?, ?> map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                name(String.valueOf(entry.getKey()));
+                value(entry.getValue());
+            }
+            return endObject();
+        }
+        if (value instanceof Iterable<?> items) {
+            beginArray();
+            for (Object item : items) {
+                value(item);
+            }
+            return endArray();
+        }
+        return value(value.toString());
+    }
+
+    /**
+     * Write an already-serialized JSON value as-is.
+     */
+    JsonWriter rawValue(byte[] json) {
+        beforeValue();
+        writeBytes(json);
+        return this;
+    }
+
+    JsonWriter nullValue() {
+        beforeValue();
+        writeBytes(NULL);
+        return this;
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasElements[depth]) {
+                writeByte(',');
+            }
+            hasElements[depth] = true;
+        }
+    }
+
+    private void push() {
+        depth++;
+        if (depth == hasElements.length) {
+            hasElements = Arrays.copyOf(hasElements, depth * 2);
+        }
+        hasElements[depth] = false;
+    }
+
+    private void writeString(String s) {
+        // Worst case is a 6 byte unicode escape per char, so reserve once up front
+        ensureCapacity(s.length() * 6 + 2);
+        buf[count++] = '"';
+        writeStringContent(s);
+        buf[count++] = '"';
+    }
+
+    /**
+     * Encode and escape the chars of a string; the caller must have reserved 6 bytes per char.
+     */
+    private void writeStringContent(String s) {
+        byte[] b = buf;
+        int n = count;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                b[n++] = (byte) c;
+            } else if (c < 0x80) {
+                n = writeEscape(b, n, c);
+            } else if (c < 0x800) {
+                b[n++] = (byte) (0xc0 | (c >> 6));
+                b[n++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[n++] = (byte) (0xf0 | (cp >> 18));
+                b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                b[n++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate: same replacement as String.getBytes(UTF_8)
+                b[n++] = '?';
+            } else {
+                b[n++] = (byte) (0xe0 | (c >> 12));
+                b[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                b[n++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        count = n;
+    }
+
+    private static int writeEscape(byte[] b, int n, char c) {
+        b[n++] = '\\';
+        switch (c) {
+            case '"' -> b[n++] = '"';
+            case '\\' -> b[n++] = '\\';
+            case '\b' -> b[n++] = 'b';
+            case '\f' -> b[n++] = 'f';
+            case '\n' -> b[n++] = 'n';
+            case '\r' -> b[n++] = 'r';
+            case '\t' -> b[n++] = 't';
+            default -> {
+                b[n++] = 'u';
+                b[n++] = '0';
+                b[n++] = '0';
+                b[n++] = HEX[(c >> 4) & 0xf];
+                b[n++] = HEX[c & 0xf];
+            }
+        }
+        return n;
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeBytes(MIN_LONG);
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buf[count++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int end = count + digits;
+        for (int i = end - 1; i >= count; i--) {
+            buf[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        count = end;
+    }
+
+    private void writeRaw(String s) {
+        ensureCapacity(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                writeBytes(s.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buf[count++] = (byte) c;
+        }
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void writeByte(char c) {
+        ensureCapacity(1);
+        buf[count++] = (byte) c;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (count + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+        }
+    }
+}
@@ -30,6 +30,13 @@ public interface Logger {
      */
     void error(String message, Throwable throwable);
 
+    /**
+     * Whether debug messages are logged at all, so callers can skip building them.
+     */
+    default boolean isDebugEnabled() {
+        return true;
+    }
+
     /**
      * Default logger that writes to System.err.
      */
@@ -95,5 +102,10 @@ public interface Logger {
 
         @Override
         public void error(String message, Throwable throwable) {}
+
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
     }
 }
@@ -1,5 +1,6 @@
 package com.checkend;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
 
@@ -19,6 +20,24 @@ public final class Notice {
     private Instant occurredAt;
     private Map<String, String> notifier;
 
+    // Set when repeats of this notice were collapsed into it by the Deduplicator
+    private long occurrences = 1;
+    private Instant firstSeenAt;
+    private Instant lastSeenAt;
+
+    // Number of occurrences this notice stands for when the Sampler dropped the others
+    private long sampleWeight = 1;
+
+    // Key recognizing repeats of the same error; 0 until computed
+    private long identity;
+
+    // Raw frames captured by NoticeBuilder; only turned into maps if getBacktrace() is called
+    private StackTraceElement[] stackTrace;
+    private int stackTraceLength;
+
+    // Already-serialized notice forwarded verbatim; when set, the fields above are unused
+    private byte[] json;
+
     public Notice() {
         this.backtrace = new ArrayList<>();
         this.tags = new ArrayList<>();
@@ -29,6 +48,17 @@ public final class Notice {
         this.notifier = new HashMap<>();
     }
 
+    /**
+     * Create a notice that forwards an already-serialized notice JSON object verbatim,
+     * e.g. one received by the relay from another process. The bytes must be a single
+     * UTF-8 JSON object in the ingest format; they are sent as-is and not validated.
+     */
+    public static Notice fromJson(byte[] json) {
+        Notice notice = new Notice();
+        notice.json = json;
+        return notice;
+    }
+
     // Getters and setters
     public String getErrorClass() { return errorClass; }
     public void setErrorClass(String errorClass) { this.errorClass = errorClass; }
@@ -36,8 +66,27 @@ public final class Notice {
     public String getMessage() { return message; }
     public void setMessage(String message) { this.message = message; }
 
-    public List<Map<String, Object>> getBacktrace() { return backtrace; }
-    public void setBacktrace(List<Map<String, Object>> backtrace) { this.backtrace = backtrace; }
+    public List<Map<String, Object>> getBacktrace() {
+        if (stackTrace != null) {
+            backtrace = buildBacktrace(stackTrace, stackTraceLength);
+            stackTrace = null;
+        }
+        return backtrace;
+    }
+
+    public void setBacktrace(List<Map<String, Object>> backtrace) {
+        this.backtrace = backtrace;
+        this.stackTrace = null;
+    }
+
+    /**
+     * Set the backtrace from the first {@code length} raw stack frames.
+     */
+    void setStackTrace(StackTraceElement[] stackTrace, int length) {
+        this.stackTrace = stackTrace;
+        this.stackTraceLength = length;
+        this.backtrace = null;
+    }
 
     public String getFingerprint() { return fingerprint; }
     public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
@@ -60,17 +109,99 @@ public final class Notice {
     public Instant getOccurredAt() { return occurredAt; }
     public void setOccurredAt(Instant occurredAt) { this.occurredAt = occurredAt; }
 
+    public long getOccurrences() { return occurrences; }
+    public Instant getFirstSeenAt() { return firstSeenAt; }
+    public Instant getLastSeenAt() { return lastSeenAt; }
+
+    /**
+     * Record that this notice stands for {@code occurrences} occurrences of the same error
+     * seen between {@code firstSeenAt} and {@code lastSeenAt}.
+     */
+    void setOccurrences(long occurrences, Instant firstSeenAt, Instant lastSeenAt) {
+        this.occurrences = occurrences;
+        this.firstSeenAt = firstSeenAt;
+        this.lastSeenAt = lastSeenAt;
+    }
+
+    public long getSampleWeight() { return sampleWeight; }
+    void setSampleWeight(long sampleWeight) { this.sampleWeight = sampleWeight; }
+
     public Map<String, String> getNotifier() { return notifier; }
     public void setNotifier(Map<String, String> notifier) { this.notifier = notifier; }
 
+    /**
+     * Cheap estimate of the serialized size in bytes, without serializing the notice.
+     */
+    long estimatedSize() {
+        if (json != null) {
+            return json.length;
+        }
+        // Field names, timestamp and punctuation
+        long size = 160 + estimate(errorClass) + estimate(message) + estimate(fingerprint) + estimate(environment);
+        if (stackTrace != null) {
+            for (int i = 0; i < stackTraceLength; i++) {
+                StackTraceElement element = stackTrace[i];
+                size += 40 + element.getClassName().length() + element.getMethodName().length()
+                    + (element.getFileName() != null ? element.getFileName().length() : 7);
+            }
+        } else {
+            size += estimate(backtrace);
+        }
+        return size + estimate(tags) + estimate(context) + estimate(request) + estimate(user) + estimate(notifier);
+    }
+
+    private static long estimate(Object value) {
+        if (value instanceof CharSequence text) {
+            return text.length() + 2;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = 2;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += 4 + estimate(String.valueOf(entry.getKey())) + estimate(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Iterable<?> items) {
+            long size = 2;
+            for (Object item : items) {
+                size += 1 + estimate(item);
+            }
+            return size;
+        }
+        return value == null ? 4 : 20;
+    }
+
+    /**
+     * Key under which copies of the same error are grouped, as computed by the
+     * {@link Fingerprinter} when the notice was built. Notices built by hand are keyed by
+     * their fingerprint, or their error class and message if there is none. 0 for forwarded
+     * JSON notices, which are opaque.
+     */
+    long identity() {
+        if (identity == 0 && json == null) {
+            identity = fingerprint != null
+                ? StackFingerprinter.hash(fingerprint)
+                : StackFingerprinter.hash(errorClass + ": " + message);
+        }
+        return identity;
+    }
+
+    void setIdentity(long identity) {
+        this.identity = identity;
+    }
+
     /**
      * Convert to JSON-compatible map for serialization.
      */
+    @SuppressWarnings("unchecked")
     public Map<String, Object> toMap() {
+        if (json != null) {
+            return (Map<String, Object>) JsonReader.parse(new String(json, StandardCharsets.UTF_8));
+        }
         Map<String, Object> map = new LinkedHashMap<>();
         map.put("error_class", errorClass);
         map.put("message", message);
-        map.put("backtrace", backtrace);
+        map.put("backtrace", getBacktrace());
         if (fingerprint != null) {
             map.put("fingerprint", fingerprint);
         }
@@ -88,7 +219,75 @@ public final class Notice {
         }
         map.put("environment", environment);
         map.put("occurred_at", occurredAt.toString());
+        if (occurrences > 1) {
+            map.put("occurrences", occurrences);
+            map.put("first_seen_at", firstSeenAt.toString());
+            map.put("last_seen_at", lastSeenAt.toString());
+        }
+        if (sampleWeight > 1) {
+            map.put("sample_weight", sampleWeight);
+        }
         map.put("notifier", notifier);
         return map;
     }
+
+    /**
+     * Write this notice as JSON, producing the same output as serializing {@link #toMap()}
+     * but straight from the fields, without building the intermediate maps.
+     */
+    void writeJson(JsonWriter writer) {
+        if (json != null) {
+            writer.rawValue(json);
+            return;
+        }
+        writer.beginObject();
+        writer.name("error_class").value(errorClass);
+        writer.name("message").value(message);
+        writer.name("backtrace");
+        if (stackTrace != null) {
+            BacktraceCache.SHARED.write(writer, stackTrace, stackTraceLength);
+        } else {
+            writer.value(backtrace);
+        }
+        if (fingerprint != null) {
+            writer.name("fingerprint").value(fingerprint);
+        }
+        if (tags != null && !tags.isEmpty()) {
+            writer.name("tags").value(tags);
+        }
+        if (context != null && !context.isEmpty()) {
+            writer.name("context").value(context);
+        }
+        if (request != null && !request.isEmpty()) {
+            writer.name("request").value(request);
+        }
+        if (user != null && !user.isEmpty()) {
+            writer.name("user").value(user);
+        }
+        writer.name("environment").value(environment);
+        writer.name("occurred_at").value(occurredAt.toString());
+        if (occurrences > 1) {
+            writer.name("occurrences").value(occurrences);
+            writer.name("first_seen_at").value(firstSeenAt.toString());
+            writer.name("last_seen_at").value(lastSeenAt.toString());
+        }
+        if (sampleWeight > 1) {
+            writer.name("sample_weight").value(sampleWeight);
+        }
+        writer.name("notifier").value(notifier);
+        writer.endObject();
+    }
+
+    private static List<Map<String, Object>> buildBacktrace(StackTraceElement[] stackTrace, int length) {
+        List<Map<String, Object>> backtrace = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            StackTraceElement element = stackTrace[i];
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("file", element.getFileName() != null ? element.getFileName() : "Unknown");
+            frame.put("line", element.getLineNumber());
+            frame.put("method", element.getClassName() + "." + element.getMethodName());
+            backtrace.add(frame);
+        }
+        return backtrace;
+    }
 }
@@ -7,6 +7,10 @@ import java.util.*;
 
 /**
  * Builds Notice objects from exceptions.
+ *
+ * <p>Building happens in two steps: {@link #capture} takes a {@link Snapshot} of everything
+ * that belongs to the reporting thread, and {@link #build(Snapshot)} turns it into a notice,
+ * possibly later on another thread.
  */
 public final class NoticeBuilder {
     private static final int MAX_MESSAGE_LENGTH = 10000;
@@ -14,9 +18,14 @@ public final class NoticeBuilder {
     private static final String SDK_VERSION = "0.1.0";
 
     private final Configuration config;
+    private final Fingerprinter fingerprinter;
+    // The queue groups notices by identity to evict the most repeated one first
+    private final boolean queueNeedsIdentity;
 
     public NoticeBuilder(Configuration config) {
         this.config = config;
+        this.fingerprinter = config.getFingerprinter();
+        this.queueNeedsIdentity = config.getOverflowPolicy() == OverflowPolicy.DROP_MOST_DUPLICATED;
     }
 
     /**
@@ -30,16 +39,28 @@ public final class NoticeBuilder {
      * Build a notice from an exception with options.
      */
     public Notice build(Throwable exception, Map<String, Object> options) {
-        if (options == null) {
-            options = Collections.emptyMap();
-        }
+        return build(capture(exception, null, options, 0));
+    }
+
+    /**
+     * Build a notice from a snapshot taken by {@link #capture}, on any thread.
+     */
+    Notice build(Snapshot snapshot) {
+        Throwable exception = snapshot.exception();
+        Map<String, Object> options = snapshot.options();
 
         Notice notice = new Notice();
         notice.setErrorClass(exception.getClass().getName());
         notice.setMessage(truncateMessage(exception.getMessage()));
-        notice.setBacktrace(buildBacktrace(exception));
+        StackTraceElement[] stackTrace = snapshot.stackTrace() != null ? snapshot.stackTrace() : exception.getStackTrace();
+        notice.setStackTrace(stackTrace, Math.min(stackTrace.length, MAX_BACKTRACE_LINES));
+        if (snapshot.identity() != 0) {
+            notice.setIdentity(snapshot.identity());
+        } else if (queueNeedsIdentity) {
+            notice.setIdentity(identify(exception, stackTrace, options));
+        }
         notice.setEnvironment(config.getEnvironment());
-        notice.setOccurredAt(Instant.now());
+        notice.setOccurredAt(snapshot.occurredAt());
         notice.setNotifier(buildNotifier());
 
         // Apply options
@@ -53,40 +74,66 @@ public final class NoticeBuilder {
             notice.setTags(tags);
         }
 
-        // Context: respect sendContextData toggle
-        if (config.isSendContextData()) {
-            Map<String, Object> mergedContext = new HashMap<>(Checkend.getContext());
-            if (options.containsKey("context")) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> optContext = (Map<String, Object>) options.get("context");
-                mergedContext.putAll(optContext);
-            }
-            notice.setContext(SanitizeFilter.filter(mergedContext, config.getFilterKeys()));
+        if (snapshot.context() != null) {
+            notice.setContext(SanitizeFilter.filter(snapshot.context(), config.getFilterKeys()));
+        }
+        if (snapshot.request() != null) {
+            notice.setRequest(SanitizeFilter.filter(snapshot.request(), config.getFilterKeys()));
         }
+        if (snapshot.user() != null) {
+            notice.setUser(SanitizeFilter.filter(snapshot.user(), config.getFilterKeys()));
+        }
+
+        return notice;
+    }
 
-        // Request: respect sendRequestData toggle
-        if (config.isSendRequestData()) {
-            Map<String, Object> mergedRequest = new HashMap<>(Checkend.getRequest());
-            if (options.containsKey("request")) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> optRequest = (Map<String, Object>) options.get("request");
-                mergedRequest.putAll(optRequest);
-            }
-            notice.setRequest(SanitizeFilter.filter(mergedRequest, config.getFilterKeys()));
+    /**
+     * Take a snapshot of what a notice for this exception needs from the reporting thread:
+     * the options, the thread's context, request and user data merged with the options' (only
+     * those that are sent), and the time. The maps are shallow copies, owned by the snapshot.
+     *
+     * @param stackTrace the exception's stack trace if already fetched, or null to fetch it when building
+     */
+    Snapshot capture(Throwable exception, StackTraceElement[] stackTrace, Map<String, Object> options, long identity) {
+        if (options == null) {
+            options = Collections.emptyMap();
         }
+        // Merge the thread's data with the options', respecting the send*Data toggles
+        return new Snapshot(exception, stackTrace,
+            options.isEmpty() ? options : new HashMap<>(options),
+            config.isSendContextData() ? merge(Checkend.getContext(), options.get("context")) : null,
+            config.isSendRequestData() ? merge(Checkend.getRequest(), options.get("request")) : null,
+            config.isSendUserData() ? merge(Checkend.getUser(), options.get("user")) : null,
+            Instant.now(), identity);
+    }
 
-        // User: respect sendUserData toggle
-        if (config.isSendUserData()) {
-            Map<String, Object> mergedUser = new HashMap<>(Checkend.getUser());
-            if (options.containsKey("user")) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> optUser = (Map<String, Object>) options.get("user");
-                mergedUser.putAll(optUser);
-            }
-            notice.setUser(SanitizeFilter.filter(mergedUser, config.getFilterKeys()));
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> merge(Map<String, Object> threadData, Object optionData) {
+        if (optionData != null) {
+            threadData.putAll((Map<String, Object>) optionData);
         }
+        return threadData;
+    }
 
-        return notice;
+    /**
+     * Compute the key recognizing repeats of this error, without building a notice: the
+     * {@code fingerprint} option if given, otherwise the configured {@link Fingerprinter}'s.
+     * Never 0.
+     */
+    long identify(Throwable exception, Map<String, Object> options) {
+        return identify(exception, exception.getStackTrace(), options);
+    }
+
+    /**
+     * Compute the identity from a stack trace already fetched, so that it can be handed on to
+     * {@link #capture} rather than fetched again.
+     */
+    long identify(Throwable exception, StackTraceElement[] stackTrace, Map<String, Object> options) {
+        Object custom = options != null ? options.get("fingerprint") : null;
+        long identity = custom instanceof String fingerprint
+            ? StackFingerprinter.hash(fingerprint)
+            : fingerprinter.fingerprint(exception, stackTrace);
+        return identity != 0 ? identity : 1;
     }
 
     private String truncateMessage(String message) {
@@ -99,23 +146,6 @@ public final class NoticeBuilder {
         return message;
     }
 
-    private List<Map<String, Object>> buildBacktrace(Throwable exception) {
-        List<Map<String, Object>> backtrace = new ArrayList<>();
-        StackTraceElement[] stackTrace = exception.getStackTrace();
-
-        int limit = Math.min(stackTrace.length, MAX_BACKTRACE_LINES);
-        for (int i = 0; i < limit; i++) {
-            StackTraceElement element = stackTrace[i];
-            Map<String, Object> frame = new LinkedHashMap<>();
-            frame.put("file", element.getFileName() != null ? element.getFileName() : "Unknown");
-            frame.put("line", element.getLineNumber());
-            frame.put("method", element.getClassName() + "." + element.getMethodName());
-            backtrace.add(frame);
-        }
-
-        return backtrace;
-    }
-
     private Map<String, String> buildNotifier() {
         Map<String, String> notifier = new LinkedHashMap<>();
         notifier.put("name", "checkend-java");
@@ -136,4 +166,25 @@ public final class NoticeBuilder {
 
         return notifier;
     }
+
+    /**
+     * What a notice needs from the reporting thread, captured when the error is reported.
+     *
+     * <p>The snapshot owns its maps, so later changes to the thread's context, or to the
+     * options map passed in, do not affect it. The copies are shallow, though: the values
+     * in them, and the exception itself, are only read when the notice is built. Values that
+     * are mutated after reporting (e.g. a mutable object put in the context) may be reported
+     * in their later state, and exceptions whose {@code getMessage()} depends on mutable
+     * state may report a later message. Strings, numbers and other immutable values are safe.
+     *
+     * @param stackTrace the exception's stack trace, or null to fetch it when building
+     * @param context the context to send, or null if context data is not sent
+     * @param request the request data to send, or null if request data is not sent
+     * @param user the user data to send, or null if user data is not sent
+     * @param identity the notice's identity, or 0 to compute it when building if the queue needs it
+     */
+    record Snapshot(Throwable exception, StackTraceElement[] stackTrace, Map<String, Object> options,
+                    Map<String, Object> context, Map<String, Object> request, Map<String, Object> user,
+                    Instant occurredAt, long identity) {
+    }
 }
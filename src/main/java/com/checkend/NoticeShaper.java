@@ -0,0 +1,113 @@
+package com.checkend;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local rate limit on reported errors, checked before a notice is built: a token bucket for
+ * all errors and one per error class, so a single noisy error cannot use up the whole rate.
+ * Errors over either limit are counted per error class instead of sent, and reported in
+ * periodic summaries.
+ */
+final class NoticeShaper {
+    // Buckets are dropped once this many error classes are tracked; they start out full again
+    private static final int MAX_TRACKED_CLASSES = 1000;
+    private static final String UNKNOWN_CLASS = "unknown";
+
+    private final TokenBucket global;
+    private final double perClassRate;
+    private final Map<String, TokenBucket> perClass = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> suppressed = new ConcurrentHashMap<>();
+    private final AtomicLong suppressedTotal = new AtomicLong();
+
+    NoticeShaper(double globalRate, double perClassRate) {
+        this.global = globalRate > 0 ? new TokenBucket(globalRate, System.nanoTime()) : null;
+        this.perClassRate = perClassRate;
+    }
+
+    /**
+     * Whether the configuration sets any limit at all.
+     */
+    static boolean isEnabled(Configuration config) {
+        return config.getRateLimit() > 0 || config.getRateLimitPerErrorClass() > 0;
+    }
+
+    /**
+     * Check an error against the limits, counting it as suppressed if it is over either.
+     *
+     * @return true if a notice may be sent for it
+     */
+    boolean tryAcquire(String errorClass) {
+        if (errorClass == null) {
+            errorClass = UNKNOWN_CLASS;
+        }
+        long now = System.nanoTime();
+        TokenBucket bucket = perClassRate > 0 ? bucketFor(errorClass, now) : null;
+        if (bucket != null && !bucket.tryTake(now)) {
+            return suppress(errorClass);
+        }
+        if (global != null && !global.tryTake(now)) {
+            // Not sent, so it must not use up the error class's own rate
+            if (bucket != null) {
+                bucket.giveBack();
+            }
+            return suppress(errorClass);
+        }
+        return true;
+    }
+
+    private boolean suppress(String errorClass) {
+        suppressed.computeIfAbsent(errorClass, k -> new AtomicLong()).incrementAndGet();
+        suppressedTotal.incrementAndGet();
+        return false;
+    }
+
+    private TokenBucket bucketFor(String errorClass, long now) {
+        TokenBucket bucket = perClass.get(errorClass);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (perClass.size() >= MAX_TRACKED_CLASSES) {
+            perClass.clear();
+        }
+        return perClass.computeIfAbsent(errorClass, k -> new TokenBucket(perClassRate, now));
+    }
+
+    /**
+     * Total number of notices suppressed so far.
+     */
+    long suppressedCount() {
+        return suppressedTotal.get();
+    }
+
+    /**
+     * Describe the notices suppressed since the last summary, by error class, and start
+     * counting afresh.
+     *
+     * @return the summary, or null if nothing was suppressed
+     */
+    String takeSummary() {
+        Map<String, Long> counts = new TreeMap<>();
+        long total = 0;
+        for (String errorClass : suppressed.keySet()) {
+            AtomicLong count = suppressed.remove(errorClass);
+            if (count != null) {
+                counts.put(errorClass, count.get());
+                total += count.get();
+            }
+        }
+        if (total == 0) {
+            return null;
+        }
+        StringBuilder summary = new StringBuilder("Rate limit suppressed ").append(total)
+            .append(total == 1 ? " notice: " : " notices: ");
+        String separator = "";
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            summary.append(separator).append(entry.getKey()).append(" x").append(entry.getValue());
+            separator = ", ";
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,246 @@
+package com.checkend;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Queues the worker's notices, making room when the queue is full, by count or by
+ * {@link Configuration#getMaxQueueBytes() size}, as {@link Configuration#getOverflowPolicy()}
+ * says, and counts the notices dropped by kind. A notice's size stays counted until it is sent
+ * or dropped, so notices in flight or awaiting a retry count against the size limit too.
+ */
+final class OverflowHandler {
+    private final Configuration config;
+    private final Logger logger;
+    private final RingBufferQueue<Delivery> queue;
+    private final AtomicBoolean running;
+    private final QueuedDuplicates duplicates;
+    private final AtomicLong droppedNewest = new AtomicLong();
+    private final AtomicLong droppedOldest = new AtomicLong();
+    private final AtomicLong droppedDuplicates = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    OverflowHandler(Configuration config, RingBufferQueue<Delivery> queue, AtomicBoolean running) {
+        this.config = config;
+        this.logger = config.getLogger();
+        this.queue = queue;
+        this.running = running;
+        this.duplicates = config.getOverflowPolicy() == OverflowPolicy.DROP_MOST_DUPLICATED
+            ? new QueuedDuplicates()
+            : null;
+    }
+
+    /**
+     * Queue a notice, making room for it according to the overflow policy, or drop it.
+     *
+     * @param entry the notice's spool entry, or null if it is not spooled
+     * @return false if the notice was dropped
+     */
+    boolean offer(Delivery delivery, Spool.Entry entry) {
+        if (reserveOnOverflow(delivery, entry) && (queue.offer(delivery) || offerOnOverflow(delivery))) {
+            queued(delivery);
+            return true;
+        }
+        rejected();
+        delivery.complete(new Client.Response(0, "Queue full", null));
+        return false;
+    }
+
+    /**
+     * Queue a notice recovered from the spool if there is room, without dropping others for it.
+     */
+    boolean offerRecovered(Delivery delivery, long size) {
+        if (reserve(delivery, size) && queue.offer(delivery)) {
+            queued(delivery);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Take a notice back off the queue, unless it has been taken off it already.
+     */
+    boolean takeBack(Delivery delivery) {
+        if (!queue.remove(delivery)) {
+            return false;
+        }
+        if (duplicates != null) {
+            duplicates.taken(delivery);
+        }
+        return true;
+    }
+
+    /**
+     * Count an incoming notice dropped because there was no room for it.
+     */
+    void rejected() {
+        droppedNewest.incrementAndGet();
+        logger.warn("Queue full, notice dropped");
+    }
+
+    /**
+     * Stop tracking notices the dispatcher took off the queue.
+     */
+    void taken(List<Delivery> batch) {
+        if (duplicates != null) {
+            for (Delivery delivery : batch) {
+                duplicates.taken(delivery);
+            }
+        }
+    }
+
+    /**
+     * Make room for a notice in the full queue according to the overflow policy.
+     *
+     * @return false if the notice itself should be dropped
+     */
+    private boolean offerOnOverflow(Delivery delivery) {
+        switch (config.getOverflowPolicy()) {
+            case DROP_OLDEST:
+                return evict(delivery, false);
+            case DROP_MOST_DUPLICATED:
+                return evict(delivery, true);
+            case BLOCK:
+                return waitFor(() -> queue.offer(delivery), config.getOverflowBlockTimeoutMs());
+            default:
+                return false;
+        }
+    }
+
+    private boolean evict(Delivery delivery, boolean duplicatesOnly) {
+        // Stops once the dispatcher has too many removed notices left to skip
+        while (queue.canMakeRoom()) {
+            Delivery victim = duplicatesOnly ? duplicates.mostDuplicated() : queue.peek();
+            if (victim == null) {
+                // Nothing to evict: either no duplicates, or the queue drained meanwhile
+                return !duplicatesOnly && queue.offer(delivery);
+            }
+            // Otherwise the victim was sent in the meantime, which may have made room
+            if (queue.remove(victim)) {
+                dropQueued(victim, duplicatesOnly);
+            }
+            // Appended behind the queued notices, so the queue stays in order
+            if (queue.offer(delivery)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void queued(Delivery delivery) {
+        if (duplicates != null) {
+            duplicates.queued(delivery);
+        }
+    }
+
+    private void dropQueued(Delivery victim, boolean duplicate) {
+        if (duplicates != null) {
+            duplicates.taken(victim);
+        }
+        (duplicate ? droppedDuplicates : droppedOldest).incrementAndGet();
+        logger.debug("Queue full, queued notice dropped to make room");
+        victim.complete(new Client.Response(0, "Queue full", null));
+    }
+
+    /**
+     * Count the notice's size against the byte limit, if there is one, making room according
+     * to the overflow policy when it would be exceeded.
+     *
+     * @return false if the notice itself should be dropped
+     */
+    private boolean reserveOnOverflow(Delivery delivery, Spool.Entry entry) {
+        long max = config.getMaxQueueBytes();
+        if (max <= 0) {
+            return true;
+        }
+        long size = entry != null ? entry.length() : delivery.notice().estimatedSize();
+        if (size > max) {
+            return false;
+        }
+        OverflowPolicy policy = config.getOverflowPolicy();
+        boolean reserved = reserve(delivery, size);
+        if (!reserved && policy == OverflowPolicy.BLOCK) {
+            reserved = waitFor(() -> reserve(delivery, size), config.getOverflowBlockTimeoutMs());
+        }
+        boolean duplicatesOnly = policy == OverflowPolicy.DROP_MOST_DUPLICATED;
+        while (!reserved && (duplicatesOnly || policy == OverflowPolicy.DROP_OLDEST) && queue.canMakeRoom()) {
+            Delivery victim = duplicatesOnly ? duplicates.mostDuplicated() : queue.peek();
+            if (victim == null) {
+                break;
+            }
+            if (queue.remove(victim)) {
+                dropQueued(victim, duplicatesOnly);
+            }
+            reserved = reserve(delivery, size);
+        }
+        return reserved;
+    }
+
+    /**
+     * Count {@code size} bytes against the byte limit for the notice if they fit.
+     */
+    private boolean reserve(Delivery delivery, long size) {
+        long max = config.getMaxQueueBytes();
+        if (max <= 0) {
+            return true;
+        }
+        long current;
+        do {
+            current = queuedBytes.get();
+            if (current + size > max) {
+                return false;
+            }
+        } while (!queuedBytes.compareAndSet(current, current + size));
+        delivery.reserved(queuedBytes, size);
+        return true;
+    }
+
+    /**
+     * Retry {@code attempt} until it succeeds or the timeout passes, backing off from 50us up to 1ms.
+     */
+    private boolean waitFor(BooleanSupplier attempt, long timeoutMs) {
+        blocked.incrementAndGet();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        long backoffNanos = 50_000;
+        while (running.get()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(backoffNanos, remaining));
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            if (attempt.getAsBoolean()) {
+                return true;
+            }
+            backoffNanos = Math.min(backoffNanos * 2, 1_000_000);
+        }
+        return false;
+    }
+
+    long queuedBytes() {
+        return queuedBytes.get();
+    }
+
+    long droppedNewestCount() {
+        return droppedNewest.get();
+    }
+
+    long droppedOldestCount() {
+        return droppedOldest.get();
+    }
+
+    long droppedDuplicateCount() {
+        return droppedDuplicates.get();
+    }
+
+    long blockedCount() {
+        return blocked.get();
+    }
+}
@@ -0,0 +1,30 @@
+package com.checkend;
+
+/**
+ * What the worker does with a notice when its queue is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Drop the incoming notice (the default).
+     */
+    DROP_NEWEST,
+
+    /**
+     * Drop the oldest queued notice to make room for the incoming one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Wait up to the configured timeout for room, then drop the incoming notice.
+     * The reporting thread is blocked while waiting.
+     */
+    BLOCK,
+
+    /**
+     * Drop the most recent copy of the error that is queued most often, so that a storm
+     * of one error cannot crowd out rarer ones. Notices are grouped by the configured
+     * {@link Fingerprinter}, or by their fingerprint option when given. If no error is queued
+     * more than once, the incoming notice is dropped.
+     */
+    DROP_MOST_DUPLICATED
+}
@@ -0,0 +1,69 @@
+package com.checkend;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts notices from the moment the worker accepts them until they are settled,
+ * i.e. delivered or dropped, and wakes flushing threads as soon as none are left.
+ */
+final class Pending {
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile int waiters;
+    private long deliveredAtLastFlush;
+    private long droppedAtLastFlush;
+
+    void add() {
+        pending.incrementAndGet();
+    }
+
+    void settle(boolean success) {
+        (success ? delivered : dropped).incrementAndGet();
+        release();
+    }
+
+    /**
+     * Stop counting something as pending without counting it as delivered or dropped, e.g. a
+     * deferred notice once it is queued (and counted again) or filtered out.
+     */
+    void release() {
+        if (pending.decrementAndGet() == 0 && waiters > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    long count() {
+        return pending.get();
+    }
+
+    /**
+     * Wait until nothing is pending or the timeout passes.
+     */
+    synchronized FlushResult await(long timeoutMs) {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000;
+        waiters++;
+        try {
+            while (pending.get() > 0) {
+                long remainingMs = (deadline - System.nanoTime()) / 1_000_000;
+                if (remainingMs <= 0) {
+                    break;
+                }
+                wait(remainingMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiters--;
+        }
+        long deliveredNow = delivered.get();
+        long droppedNow = dropped.get();
+        FlushResult result = new FlushResult(deliveredNow - deliveredAtLastFlush,
+            droppedNow - droppedAtLastFlush, pending.get());
+        deliveredAtLastFlush = deliveredNow;
+        droppedAtLastFlush = droppedNow;
+        return result;
+    }
+}
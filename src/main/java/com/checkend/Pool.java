@@ -0,0 +1,62 @@
+package com.checkend;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Small bounded pool of reusable objects, such as request buffers, shared by the threads
+ * sending notices. Unlike a thread-local it keeps no object per thread, so sending on many
+ * short-lived (e.g. virtual) threads neither allocates a new object for each one nor leaves
+ * them behind. Objects that do not fit back into the pool are handed to a discard action.
+ */
+final class Pool<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final Supplier<T> factory;
+    private final Consumer<T> discard;
+
+    Pool(int size, Supplier<T> factory, Consumer<T> discard) {
+        this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+        this.factory = factory;
+        this.discard = discard;
+    }
+
+    /**
+     * Take an idle object from the pool, or create one if there is none.
+     */
+    T acquire() {
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                T item = slots.getAndSet(i, null);
+                if (item != null) {
+                    return item;
+                }
+            }
+        }
+        return factory.get();
+    }
+
+    /**
+     * Return an object to the pool, or discard it if the pool is full.
+     */
+    void release(T item) {
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, item)) {
+                return;
+            }
+        }
+        discard.accept(item);
+    }
+
+    /**
+     * Discard every idle object in the pool.
+     */
+    void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            T item = slots.getAndSet(i, null);
+            if (item != null) {
+                discard.accept(item);
+            }
+        }
+    }
+}
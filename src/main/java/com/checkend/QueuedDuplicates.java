@@ -0,0 +1,87 @@
+package com.checkend;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The queued notices grouped by {@link Notice#identity() identity}, kept up to date as notices
+ * are queued and taken off the queue, so that {@link OverflowPolicy#DROP_MOST_DUPLICATED} finds
+ * its victim without walking the queue. Notices without an identity are not tracked.
+ */
+final class QueuedDuplicates {
+    private final Map<Long, Copies> copies = new ConcurrentHashMap<>();
+
+    /**
+     * Track a notice just added to the queue, unless it has been taken off it already.
+     */
+    void queued(Delivery delivery) {
+        long identity = delivery.notice().identity();
+        if (identity == 0) {
+            return;
+        }
+        copies.compute(identity, (key, group) -> {
+            // Checked under the same lock as taken(), so a notice taken first is never tracked
+            if (delivery.isDequeued()) {
+                return group;
+            }
+            Copies tracked = group != null ? group : new Copies();
+            tracked.add(delivery);
+            return tracked;
+        });
+    }
+
+    /**
+     * Stop tracking a notice taken off the queue, to be sent or dropped.
+     */
+    void taken(Delivery delivery) {
+        delivery.dequeued();
+        long identity = delivery.notice().identity();
+        if (identity == 0) {
+            return;
+        }
+        copies.computeIfPresent(identity, (key, group) -> group.remove(delivery) ? null : group);
+    }
+
+    /**
+     * Find the most recently queued copy of the error with the most copies in the queue,
+     * or null if no error is queued more than once.
+     */
+    Delivery mostDuplicated() {
+        Copies most = null;
+        for (Copies group : copies.values()) {
+            if (group.count > (most != null ? most.count : 1)) {
+                most = group;
+            }
+        }
+        return most != null ? most.latest() : null;
+    }
+
+    private static final class Copies {
+        private final ArrayDeque<Delivery> deliveries = new ArrayDeque<>();
+        private volatile int count;
+
+        synchronized void add(Delivery delivery) {
+            deliveries.addLast(delivery);
+            count = deliveries.size();
+        }
+
+        /**
+         * @return true if no copies are left
+         */
+        synchronized boolean remove(Delivery delivery) {
+            // Taken in queue order or evicted as the latest, so found at either end
+            if (deliveries.peekLast() == delivery) {
+                deliveries.removeLast();
+            } else {
+                deliveries.removeFirstOccurrence(delivery);
+            }
+            count = deliveries.size();
+            return count == 0;
+        }
+
+        synchronized Delivery latest() {
+            return deliveries.peekLast();
+        }
+    }
+}
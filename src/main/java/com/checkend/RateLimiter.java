@@ -0,0 +1,79 @@
+package com.checkend;
+
+/**
+ * Client-side token bucket mirroring the request quota the server advertises with the
+ * {@code RateLimit-Limit}, {@code RateLimit-Remaining} and {@code RateLimit-Reset} headers
+ * (or their {@code X-RateLimit-} forms). Each response resets the bucket to the remaining
+ * quota; it refills to the full limit when the advertised window resets. Until the server
+ * advertises a quota, requests are not limited.
+ */
+final class RateLimiter {
+    // Reset values this large are epoch seconds rather than a delay in seconds
+    private static final long EPOCH_SECONDS_THRESHOLD = 1_000_000_000L;
+
+    private long limit = -1;
+    private long tokens;
+    private long resetAtMs;
+
+    /**
+     * Adopt the quota advertised by a response, if any.
+     */
+    synchronized void update(Client.Response response, long nowMs) {
+        long remaining = header(response, "remaining");
+        if (remaining < 0) {
+            return;
+        }
+        long advertisedLimit = header(response, "limit");
+        long reset = header(response, "reset");
+        limit = advertisedLimit >= 0 ? advertisedLimit : Math.max(limit, remaining);
+        tokens = remaining;
+        if (reset < 0) {
+            resetAtMs = 0;
+        } else {
+            resetAtMs = reset >= EPOCH_SECONDS_THRESHOLD ? reset * 1000 : nowMs + reset * 1000;
+        }
+    }
+
+    /**
+     * Take a token for one request.
+     *
+     * @return 0 if the request may be sent now, otherwise milliseconds until the quota resets
+     */
+    synchronized long tryAcquire(long nowMs) {
+        if (limit < 0) {
+            return 0;
+        }
+        if (resetAtMs > 0 && nowMs >= resetAtMs) {
+            tokens = limit;
+            resetAtMs = 0;
+        }
+        if (tokens > 0) {
+            tokens--;
+            return 0;
+        }
+        // Exhausted without a known reset: let the request through and learn from the server's answer
+        return resetAtMs > 0 ? resetAtMs - nowMs : 0;
+    }
+
+    /**
+     * Milliseconds until the advertised quota resets, or -1 if unknown.
+     */
+    synchronized long resetInMs(long nowMs) {
+        return resetAtMs > 0 ? Math.max(0, resetAtMs - nowMs) : -1;
+    }
+
+    private static long header(Client.Response response, String field) {
+        String value = response.headers().get("ratelimit-" + field);
+        if (value == null) {
+            value = response.headers().get("x-ratelimit-" + field);
+        }
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
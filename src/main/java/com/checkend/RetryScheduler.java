@@ -0,0 +1,159 @@
+package com.checkend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The worker's failed notices, waiting in a delay queue for a backoff with full jitter (or the
+ * server's {@code Retry-After}) until the dispatcher sends them again ahead of the queue. The
+ * backoff is widened by a throttle that grows while the server keeps failing.
+ */
+final class RetryScheduler {
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_BASE_MS = 100;
+    private static final long MAX_RETRY_BACKOFF_MS = 30_000;
+    private static final double BASE_THROTTLE = 1.05;
+    private static final long MAX_THROTTLE_MS = 100_000; // 100 seconds
+
+    private final DelayQueue<Retry> retries = new DelayQueue<>();
+    private final AtomicLong throttleDelayMs = new AtomicLong(0);
+    private final Logger logger;
+    // Set once stop() hands back what is left; retries scheduled after that are handed back too
+    private volatile boolean stopped;
+
+    RetryScheduler(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Schedule failed notices for another attempt, or complete those out of attempts.
+     */
+    void retryLater(List<Delivery> failed, Client.Response response) {
+        long retryAfterMs = response.getRetryAfterMs(0);
+        List<Delivery> exhausted = new ArrayList<>();
+        for (Delivery delivery : failed) {
+            int attempts = delivery.recordFailedAttempt();
+            if (attempts >= MAX_RETRIES) {
+                exhausted.add(delivery);
+            } else {
+                schedule(delivery, Math.max(retryAfterMs, backoffMs(attempts)));
+            }
+        }
+        if (exhausted.size() < failed.size() && logger.isDebugEnabled()) {
+            logger.debug("Retrying " + (failed.size() - exhausted.size()) + " notice(s)");
+        }
+        if (!exhausted.isEmpty()) {
+            logger.error("Failed to send " + (exhausted.size() == 1 ? "notice" : exhausted.size() + " notices")
+                + " after " + MAX_RETRIES + " attempts");
+            for (Delivery delivery : exhausted) {
+                delivery.complete(response);
+            }
+        }
+    }
+
+    /**
+     * Put a notice in the delay queue, or hand it back if {@link #stop()} has already emptied
+     * it: a sender that outlived the shutdown timeout must not leave the notice pending forever.
+     */
+    void schedule(Delivery delivery, long delayMs) {
+        Retry retry = new Retry(delivery, delayMs);
+        retries.add(retry);
+        if (stopped && retries.remove(retry)) {
+            delivery.abandon(Worker.STOPPED);
+        }
+    }
+
+    /**
+     * Move the retries that are due into {@code batch}, up to {@code batchSize} notices.
+     */
+    void drainDue(List<Delivery> batch, int batchSize) {
+        Retry retry;
+        while (batch.size() < batchSize && (retry = retries.poll()) != null) {
+            batch.add(retry.delivery);
+        }
+    }
+
+    /**
+     * How long to wait for a queued notice: 100ms, or less if a retry falls due sooner.
+     */
+    long pollTimeoutMs() {
+        Retry next = retries.peek();
+        return next == null ? 100 : Math.max(0, Math.min(100, next.getDelay(TimeUnit.MILLISECONDS)));
+    }
+
+    boolean isEmpty() {
+        return retries.isEmpty();
+    }
+
+    /**
+     * Hand back every notice awaiting a retry, and any scheduled from now on.
+     */
+    void stop() {
+        stopped = true;
+        for (Retry retry : retries) {
+            // Removed one by one, as a late sender may be handing the same retry back
+            if (retries.remove(retry)) {
+                retry.delivery.abandon(Worker.STOPPED);
+            }
+        }
+    }
+
+    /**
+     * Backoff with full jitter: uniformly random between zero and an exponential ceiling,
+     * which the throttle widens while the server keeps failing.
+     */
+    private long backoffMs(int attempts) {
+        long exponential = RETRY_BASE_MS << Math.min(attempts - 1, 20);
+        long ceiling = Math.min(MAX_RETRY_BACKOFF_MS, Math.max(exponential, throttleDelayMs.get()));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    void increaseThrottle() {
+        throttleDelayMs.updateAndGet(current -> {
+            long newDelay = current == 0 ? 100 : (long) (current * BASE_THROTTLE);
+            return Math.min(newDelay, MAX_THROTTLE_MS);
+        });
+    }
+
+    void decreaseThrottle() {
+        throttleDelayMs.updateAndGet(current -> {
+            if (current == 0) {
+                return 0;
+            }
+            long newDelay = (long) (current / BASE_THROTTLE);
+            return newDelay < 10 ? 0 : newDelay;
+        });
+    }
+
+    long throttleDelayMs() {
+        return throttleDelayMs.get();
+    }
+
+    /**
+     * A notice waiting in the delay queue until it is due to be sent again.
+     */
+    private static final class Retry implements Delayed {
+        private final Delivery delivery;
+        private final long dueNanos;
+
+        Retry(Delivery delivery, long delayMs) {
+            this.delivery = delivery;
+            this.dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Retry) other).dueNanos);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.checkend;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer, used as the worker's
+ * notice queue so that threads reporting errors at the same moment do not contend on a lock
+ * or allocate a node per notice.
+ *
+ * <p>Slots are pre-allocated in a ring. Each slot carries a sequence number telling producers
+ * whether it is free for the position they claimed and the consumer whether it has been
+ * published (the bounded queue design by Dmitry Vyukov). Producers claim positions with a
+ * CAS on the tail; {@link #offer(Object)} fails immediately when the ring is full. An idle
+ * consumer parks and is unparked by the next producer.
+ *
+ * <p>{@link #remove(Object) Removed} elements leave an empty slot that the consumer skips.
+ * They no longer count against the capacity, so a producer can make room by removing a queued
+ * element and then append its own at the tail; the ring has twice as many slots as the
+ * capacity to hold the empty slots until the consumer has passed them.
+ *
+ * <p>Only one thread may take elements at a time: {@link #poll()}, {@link #poll(long, TimeUnit)}
+ * and {@link #drainTo(Collection, int)} must not be called concurrently.
+ */
+final class RingBufferQueue<E> {
+    private final int capacity;
+    private final int slots;
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    // Removed elements between head and tail; counted only after their slot is emptied (and
+    // possibly after the consumer has skipped it), so producers may briefly see the queue as
+    // fuller than it is but never as emptier
+    private final AtomicLong removed = new AtomicLong();
+    private volatile Thread waiter;
+
+    RingBufferQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        // Also at least two, as with a single slot its "published" and "free for the next lap"
+        // sequences coincide
+        this.slots = 2 * capacity;
+        this.items = new AtomicReferenceArray<>(slots);
+        this.sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Add an element if there is room.
+     *
+     * @return false if the queue is full
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) (position % slots);
+            long available = sequences.get(index) - position;
+            if (available == 0 && position - head.get() - removed.get() >= capacity) {
+                return false;
+            }
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                // The slot still holds the element from one lap ago
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+        items.lazySet(index, element);
+        // Volatile store, paired with the consumer's store to waiter, so a parking consumer is never missed
+        sequences.set(index, position + 1);
+        Thread parked = waiter;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+        return true;
+    }
+
+    /**
+     * Take the next element, or return null if the queue is empty.
+     */
+    E poll() {
+        while (true) {
+            long position = head.get();
+            int index = (int) (position % slots);
+            if (sequences.get(index) != position + 1) {
+                return null;
+            }
+            // Atomic so a concurrent remove() either lands before the take or fails
+            E element = items.getAndSet(index, null);
+            if (element == null) {
+                // Uncounted before the head moves past it, so producers never see spare room early
+                removed.decrementAndGet();
+            }
+            sequences.lazySet(index, position + slots);
+            head.lazySet(position + 1);
+            if (element != null) {
+                return element;
+            }
+        }
+    }
+
+    /**
+     * Take the next element, parking for up to the given time for one to arrive.
+     *
+     * @return the element, or null if none arrived in time
+     */
+    E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E element = poll();
+        if (element != null) {
+            return element;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            while (true) {
+                waiter = Thread.currentThread();
+                element = poll();
+                if (element != null) {
+                    return element;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Move up to {@code max} available elements into {@code target}.
+     *
+     * @return the number of elements moved
+     */
+    int drainTo(Collection<? super E> target, int max) {
+        int count = 0;
+        E element;
+        while (count < max && (element = poll()) != null) {
+            target.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Get the oldest queued element without taking it, or null if the queue is empty.
+     */
+    E peek() {
+        long end = tail.get();
+        for (long position = head.get(); position < end; position++) {
+            int index = (int) (position % slots);
+            if (sequences.get(index) == position + 1) {
+                E element = items.get(index);
+                if (element != null) {
+                    return element;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove the queued element {@code existing}; its slot is skipped by the consumer.
+     *
+     * @return false if {@code existing} is no longer queued
+     */
+    boolean remove(E existing) {
+        long start = head.get();
+        long end = tail.get();
+        for (long position = start; position < end; position++) {
+            int index = (int) (position % slots);
+            if (sequences.get(index) == position + 1 && items.compareAndSet(index, existing, null)) {
+                removed.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether removing a queued element would make room to append another: false while so many
+     * removed elements wait for the consumer to skip them that the ring has no slot left.
+     */
+    boolean canMakeRoom() {
+        return removed.get() < capacity;
+    }
+
+    /**
+     * Approximate number of queued elements; exact when no producer is mid-offer.
+     */
+    int size() {
+        long size = tail.get() - head.get() - removed.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,79 @@
+package com.checkend;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which occurrences of an error are reported, by its {@link Fingerprinter identity},
+ * before a notice is built for them.
+ *
+ * <p>The first {@code keepFirst} occurrences in each period are all kept. After that, one in 2
+ * is kept for the next {@code keepFirst} kept notices, then one in 4, and so on up to one in
+ * {@value #MAX_INTERVAL}. Each kept notice carries the number of occurrences it stands for as
+ * its sample weight, so counts can be extrapolated. Counting starts over each period.
+ */
+final class Sampler {
+    static final long MAX_INTERVAL = 1024;
+    // Counters are dropped once this many errors are tracked; they start out at zero again
+    private static final int MAX_TRACKED = 1000;
+
+    private final long keepFirst;
+    private final long periodMs;
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    Sampler(int keepFirst, long periodMs) {
+        this.keepFirst = Math.max(1, keepFirst);
+        this.periodMs = periodMs;
+    }
+
+    /**
+     * Count an occurrence of the error and decide whether to report it.
+     *
+     * @return the sample weight to report it with, or 0 to drop it
+     */
+    long sample(long identity) {
+        Counter counter = counters.get(identity);
+        if (counter == null) {
+            if (counters.size() >= MAX_TRACKED) {
+                counters.clear();
+            }
+            counter = counters.computeIfAbsent(identity, k -> new Counter());
+        }
+        return weight(counter.increment(System.currentTimeMillis(), periodMs));
+    }
+
+    /**
+     * Sample weight of the {@code occurrence}th occurrence (from 1) in a period, or 0 if it is dropped.
+     */
+    long weight(long occurrence) {
+        if (occurrence <= keepFirst) {
+            return 1;
+        }
+        long remaining = occurrence - keepFirst;
+        long interval = 2;
+        while (interval < MAX_INTERVAL && remaining > keepFirst * interval) {
+            remaining -= keepFirst * interval;
+            interval *= 2;
+        }
+        return remaining % interval == 0 ? interval : 0;
+    }
+
+    private static final class Counter {
+        private final AtomicLong occurrences = new AtomicLong();
+        private volatile long periodStart = System.currentTimeMillis();
+
+        long increment(long now, long periodMs) {
+            long start = periodStart;
+            if (periodMs > 0 && now - start >= periodMs) {
+                synchronized (this) {
+                    if (periodStart == start) {
+                        occurrences.set(0);
+                        periodStart = now;
+                    }
+                }
+            }
+            return occurrences.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.checkend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the worker's batches and settles each notice with the outcome. A batch is sent on the
+ * dispatcher thread itself or, with {@link Configuration#getMaxInFlight()} above 1 or
+ * {@link Configuration#isVirtualThreads()}, on a sender thread, keeping at most maxInFlight
+ * requests in flight. Rate-limit and throttle state is shared by all senders.
+ */
+final class SenderPool {
+    private static final long DEFAULT_RATE_LIMIT_BACKOFF_MS = 60_000; // 1 minute
+
+    private final Transport transport;
+    private final Logger logger;
+    private final RetryScheduler retries;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final RateLimiter rateLimiter = new RateLimiter();
+    private final AtomicLong rateLimitedUntil = new AtomicLong(0);
+
+    SenderPool(Configuration config, Transport transport, RetryScheduler retries) {
+        this.transport = transport;
+        this.logger = config.getLogger();
+        this.retries = retries;
+        this.maxInFlight = Math.max(1, config.getMaxInFlight());
+        this.inFlight = new Semaphore(maxInFlight);
+        this.executor = newExecutor(config, maxInFlight, logger);
+    }
+
+    private static ExecutorService newExecutor(Configuration config, int maxInFlight, Logger logger) {
+        if (config.isVirtualThreads()) {
+            ExecutorService virtual = VirtualThreads.newExecutor("checkend-sender-");
+            if (virtual != null) {
+                return virtual;
+            }
+            logger.warn("Virtual threads need Java 21 or later, sending on platform threads");
+        }
+        if (maxInFlight == 1) {
+            return null;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(maxInFlight, r -> {
+            Thread t = new Thread(r, "checkend-sender-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Send a batch, on the calling thread or on a sender thread once a slot in the in-flight
+     * window frees up.
+     */
+    void dispatch(List<Delivery> batch) throws InterruptedException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            // Interrupted by stop(): keep the batch rather than lose it
+            for (Delivery delivery : batch) {
+                retries.schedule(delivery, 0);
+            }
+            throw e;
+        }
+        if (executor == null) {
+            try {
+                deliver(batch);
+            } finally {
+                inFlight.release();
+            }
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    deliver(batch);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            deliver(batch);
+        }
+    }
+
+    /**
+     * Take a request from the quota the server advertises.
+     *
+     * @return 0 if the request may be sent now, or how long to wait until the quota resets
+     */
+    long tryAcquire(long now) {
+        long waitMs = rateLimiter.tryAcquire(now);
+        if (waitMs > 0) {
+            rateLimitedUntil.accumulateAndGet(now + waitMs, Math::max);
+        }
+        return waitMs;
+    }
+
+    /**
+     * How long the dispatcher should stay paused for a rate limit, or 0 once it has ended.
+     */
+    long rateLimitPauseMs() {
+        long rateLimitEnd = rateLimitedUntil.get();
+        if (rateLimitEnd == 0) {
+            return 0;
+        }
+        long waitTime = rateLimitEnd - System.currentTimeMillis();
+        if (waitTime > 0) {
+            return waitTime;
+        }
+        if (rateLimitedUntil.compareAndSet(rateLimitEnd, 0)) {
+            logger.info("Rate limit period ended, resuming");
+        }
+        return 0;
+    }
+
+    boolean isRateLimited() {
+        return rateLimitedUntil.get() > System.currentTimeMillis();
+    }
+
+    int inFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Wait until {@code deadline} for the requests in flight to finish.
+     */
+    void stop(long deadline) {
+        if (executor != null) {
+            Worker.awaitShutdown(executor, deadline);
+        }
+    }
+
+    /**
+     * Send a batch once and settle each notice: complete it, or schedule it for a retry.
+     */
+    private void deliver(List<Delivery> batch) {
+        Client.Response response;
+        try {
+            response = send(batch);
+        } catch (Exception e) {
+            logger.error("Error sending notice: " + e.getMessage());
+            response = new Client.Response(0, e.getMessage(), null);
+        }
+        long now = System.currentTimeMillis();
+        rateLimiter.update(response, now);
+
+        if (response.isSuccess()) {
+            retries.decreaseThrottle();
+            List<Delivery> failed = completeItems(batch, response);
+            if (failed.isEmpty()) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug(batch.size() == 1
+                        ? "Notice sent successfully"
+                        : "Batch of " + batch.size() + " notices sent successfully");
+                }
+                return;
+            }
+            retries.retryLater(failed, response);
+        } else if (response.isRateLimited()) {
+            // Rate limited (429)
+            long resetMs = rateLimiter.resetInMs(now);
+            long backoffMs = response.getRetryAfterMs(resetMs >= 0 ? resetMs : DEFAULT_RATE_LIMIT_BACKOFF_MS);
+            logger.warn("Rate limited by server, backing off for " + backoffMs + "ms");
+            rateLimitedUntil.accumulateAndGet(now + backoffMs, Math::max);
+            retries.increaseThrottle();
+            // Send again first thing once the pause ends, without counting this as a failed attempt
+            for (Delivery delivery : batch) {
+                retries.schedule(delivery, 0);
+            }
+        } else if (response.statusCode() >= 400 && response.statusCode() < 500) {
+            // Client errors (4xx except 429): Don't retry
+            logger.warn("Client error, not retrying " + batch.size() + " notice(s): "
+                + response.statusCode() + " - " + response.body());
+            completeAll(batch, response);
+        } else {
+            // Server errors (5xx) and connection failures
+            retries.increaseThrottle();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Server error: " + response.statusCode());
+            }
+            retries.retryLater(batch, response);
+        }
+    }
+
+    private Client.Response send(List<Delivery> deliveries) {
+        if (deliveries.size() == 1) {
+            return transport.send(deliveries.get(0).notice());
+        }
+        List<Notice> notices = new ArrayList<>(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            notices.add(delivery.notice());
+        }
+        return transport.sendBatch(notices);
+    }
+
+    /**
+     * Complete the notices of a successful request and return those the server reported
+     * as failed with a retryable status (429 or 5xx). Notices rejected with other 4xx
+     * statuses are dropped. Without per-notice results the whole request counts as accepted.
+     */
+    private List<Delivery> completeItems(List<Delivery> batch, Client.Response response) {
+        List<Integer> statuses = batch.size() == 1 ? List.of() : response.itemStatuses();
+        if (statuses.size() != batch.size()) {
+            completeAll(batch, response);
+            return List.of();
+        }
+        List<Delivery> retry = new ArrayList<>();
+        for (int i = 0; i < statuses.size(); i++) {
+            int status = statuses.get(i);
+            Delivery delivery = batch.get(i);
+            if (status == 429 || status >= 500 || status == 0) {
+                retry.add(delivery);
+                continue;
+            }
+            if (status < 200 || status >= 300) {
+                logger.warn("Notice rejected by server, not retrying: " + status);
+            }
+            delivery.complete(new Client.Response(status, response.body(), null));
+        }
+        return retry;
+    }
+
+    private static void completeAll(List<Delivery> deliveries, Client.Response response) {
+        for (Delivery delivery : deliveries) {
+            delivery.complete(response);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.checkend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Journal of queued notices in a memory-mapped file, so notices that are still unsent
+ * when the process stops can be replayed by the next worker using the same file.
+ *
+ * <p>The file is a fixed-size ring of records after a small header. Each record holds the
+ * notice JSON, its length, a CRC32 and its logical position, which must match where it is
+ * found for the record to be valid. The header stores the position of the oldest record
+ * that has not been released yet; records are released in any order as their notices are
+ * delivered or dropped, and the committed position moves past every released record at
+ * the head. Writes go to the page cache, so they survive the process but not a crash of
+ * the machine itself. Delivery is at least once: a notice sent just before the process
+ * dies may be sent again.
+ */
+final class Spool {
+    private static final int MAGIC = 0x43484b53;
+    // magic (4), capacity (4), committed position (8)
+    private static final int HEADER_SIZE = 16;
+    private static final int HEAD_OFFSET = 8;
+    // length (4), crc (4), position (8)
+    private static final int RECORD_HEADER_SIZE = 16;
+
+    /**
+     * A record in the spool; the JSON is only kept for records recovered from a previous run.
+     */
+    static final class Entry {
+        private final long position;
+        private final int length;
+        private final byte[] json;
+        private boolean released;
+
+        private Entry(long position, int length, byte[] json) {
+            this.position = position;
+            this.length = length;
+            this.json = json;
+        }
+
+        /**
+         * Size of the notice JSON in bytes.
+         */
+        int length() {
+            return length;
+        }
+
+        byte[] json() {
+            return json;
+        }
+    }
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final byte[] recordHeader = new byte[RECORD_HEADER_SIZE];
+    // Notices are serialized before taking the spool's lock, with writers shared by the
+    // reporting threads rather than kept per thread, which may be many
+    private final Pool<JsonWriter> writers =
+        new Pool<>(Runtime.getRuntime().availableProcessors(), JsonWriter::new, writer -> { });
+    private final List<Entry> recovered = new ArrayList<>();
+    private long head;
+    private long tail;
+    private boolean closed;
+
+    private Spool(FileChannel channel, FileLock lock, MappedByteBuffer buffer, int capacity) {
+        this.channel = channel;
+        this.lock = lock;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Open (or create) the spool file and recover the records left unsent by a previous run.
+     *
+     * @return the spool, or null if the file cannot be used (e.g. another process holds it)
+     */
+    static Spool open(Path path, int size, Logger logger) {
+        FileChannel channel = null;
+        try {
+            int capacity = Math.max(size - HEADER_SIZE, 1024);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                logger.warn("Spool " + path + " is in use by another process; queued notices will not be persisted");
+                channel.close();
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+            Spool spool = new Spool(channel, lock, buffer, capacity);
+            spool.recover();
+            if (!spool.recovered.isEmpty()) {
+                logger.info("Recovered " + spool.recovered.size() + " unsent notice(s) from " + path);
+            }
+            return spool;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cannot open spool " + path + "; queued notices will not be persisted: " + e.getMessage());
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Already failing
+                }
+            }
+            return null;
+        }
+    }
+
+    private void recover() {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != capacity) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, capacity);
+            buffer.putLong(HEAD_OFFSET, 0);
+            return;
+        }
+        head = buffer.getLong(HEAD_OFFSET);
+        long position = head;
+        ByteBuffer header = ByteBuffer.wrap(recordHeader);
+        CRC32 crc = new CRC32();
+        while (position - head + RECORD_HEADER_SIZE <= capacity) {
+            get(position, recordHeader, RECORD_HEADER_SIZE);
+            int length = header.getInt(0);
+            if (length <= 0 || header.getLong(8) != position
+                    || position - head + RECORD_HEADER_SIZE + length > capacity) {
+                break;
+            }
+            byte[] json = new byte[length];
+            get(position + RECORD_HEADER_SIZE, json, length);
+            crc.reset();
+            crc.update(json);
+            if ((int) crc.getValue() != header.getInt(4)) {
+                break;
+            }
+            Entry entry = new Entry(position, length, json);
+            entries.add(entry);
+            recovered.add(entry);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        tail = position;
+    }
+
+    /**
+     * Take the records recovered from a previous run, oldest first. They stay in the spool
+     * until released.
+     */
+    synchronized List<Entry> takeRecovered() {
+        List<Entry> result = new ArrayList<>(recovered);
+        recovered.clear();
+        return result;
+    }
+
+    /**
+     * Write a notice to the spool.
+     *
+     * @return the record to release once the notice is delivered or dropped, or null if
+     *         the spool is full or closed and the notice is only kept in memory
+     */
+    Entry append(Notice notice) {
+        JsonWriter writer = writers.acquire();
+        try {
+            writer.reset();
+            notice.writeJson(writer);
+            CRC32 crc = new CRC32();
+            crc.update(writer.buffer(), 0, writer.size());
+            return append(writer.buffer(), writer.size(), (int) crc.getValue());
+        } finally {
+            writers.release(writer);
+        }
+    }
+
+    /**
+     * Reserve room for a serialized notice and copy it into the mapping.
+     */
+    private synchronized Entry append(byte[] json, int length, int checksum) {
+        if (closed) {
+            return null;
+        }
+        if (tail - head + RECORD_HEADER_SIZE + length > capacity) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.wrap(recordHeader);
+        header.putInt(0, length).putInt(4, checksum).putLong(8, tail);
+        put(tail + RECORD_HEADER_SIZE, json, length);
+        put(tail, recordHeader, RECORD_HEADER_SIZE);
+        Entry entry = new Entry(tail, length, null);
+        entries.add(entry);
+        tail += RECORD_HEADER_SIZE + length;
+        return entry;
+    }
+
+    /**
+     * Mark a record as done and commit past every released record at the head.
+     */
+    synchronized void release(Entry entry) {
+        entry.released = true;
+        while (!entries.isEmpty() && entries.peekFirst().released) {
+            entries.pollFirst();
+        }
+        head = entries.isEmpty() ? tail : entries.peekFirst().position;
+        if (!closed) {
+            buffer.putLong(HEAD_OFFSET, head);
+        }
+    }
+
+    /**
+     * Number of records not yet released.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Flush the mapped file to disk and release it. Records released afterwards are
+     * not committed and will be replayed.
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer.force();
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            // The mapping has already been forced; nothing left to lose
+        }
+    }
+
+    private void put(long position, byte[] src, int length) {
+        int index = (int) (position % capacity);
+        int first = Math.min(length, capacity - index);
+        buffer.put(HEADER_SIZE + index, src, 0, first);
+        if (first < length) {
+            buffer.put(HEADER_SIZE, src, first, length - first);
+        }
+    }
+
+    private void get(long position, byte[] dst, int length) {
+        int index = (int) (position % capacity);
+        int first = Math.min(length, capacity - index);
+        buffer.get(HEADER_SIZE + index, dst, 0, first);
+        if (first < length) {
+            buffer.get(HEADER_SIZE, dst, first, length - first);
+        }
+    }
+}
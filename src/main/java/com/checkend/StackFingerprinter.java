@@ -0,0 +1,96 @@
+package com.checkend;
+
+/**
+ * {@link Fingerprinter} hashing the error class and top stack frames with 64-bit FNV-1a.
+ */
+final class StackFingerprinter implements Fingerprinter {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final String LAMBDA_METHOD_PREFIX = "lambda$";
+    private static final String REFLECTION_ACCESSOR = "Accessor";
+
+    private final int frames;
+
+    StackFingerprinter(int frames) {
+        this.frames = Math.max(0, frames);
+    }
+
+    @Override
+    public long fingerprint(Throwable exception, StackTraceElement[] stackTrace) {
+        long hash = hashClassName(FNV_OFFSET_BASIS, exception.getClass().getName());
+        int count = Math.min(frames, stackTrace.length);
+        for (int i = 0; i < count; i++) {
+            StackTraceElement frame = stackTrace[i];
+            hash = hashClassName(mix(hash, '|'), frame.getClassName());
+            hash = hashMethodName(mix(hash, '.'), frame.getMethodName());
+            hash = mix(hash, frame.getLineNumber());
+        }
+        return finish(hash);
+    }
+
+    /**
+     * Hash a string the same way, for keys that are not derived from a stack trace.
+     */
+    static long hash(CharSequence text) {
+        return finish(hashChars(FNV_OFFSET_BASIS, text, 0, text.length()));
+    }
+
+    private static long hashClassName(long hash, String name) {
+        int end = name.length();
+        // Lambda, CGLIB and hidden classes: Foo$$Lambda$12/0x0000000800c03000, Foo$$EnhancerByCGLIB$$1a2b
+        int generated = name.indexOf("$$");
+        if (generated >= 0) {
+            end = generated;
+        }
+        int hidden = name.indexOf('/');
+        if (hidden >= 0 && hidden < end) {
+            end = hidden;
+        }
+        // Reflection accessors: jdk.internal.reflect.GeneratedMethodAccessor42
+        int digits = trailingDigitsStart(name, end);
+        if (digits < end && name.startsWith(REFLECTION_ACCESSOR, digits - REFLECTION_ACCESSOR.length())) {
+            end = digits;
+        }
+        return hashChars(hash, name, 0, end);
+    }
+
+    private static long hashMethodName(long hash, String name) {
+        int end = name.length();
+        // Synthetic lambda bodies: lambda$handle$3
+        if (name.startsWith(LAMBDA_METHOD_PREFIX)) {
+            end = trailingDigitsStart(name, end);
+        }
+        return hashChars(hash, name, 0, end);
+    }
+
+    private static int trailingDigitsStart(String text, int end) {
+        int start = end;
+        while (start > 0 && Character.isDigit(text.charAt(start - 1))) {
+            start--;
+        }
+        return start;
+    }
+
+    private static long hashChars(long hash, CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            hash = mix(hash, text.charAt(i));
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    /**
+     * Spread the bits (the murmur3 finalizer), since FNV-1a leaves the high bits weakly mixed.
+     */
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
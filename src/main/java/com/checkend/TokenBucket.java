@@ -0,0 +1,42 @@
+package com.checkend;
+
+/**
+ * Token bucket refilling at a fixed rate up to a burst of one second's worth of tokens
+ * (at least one).
+ */
+final class TokenBucket {
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(double tokensPerSecond, long nowNanos) {
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.capacity = Math.max(1, tokensPerSecond);
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Take a token if one is available.
+     */
+    synchronized boolean tryTake(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Return a token taken for a request that was then refused for another reason.
+     */
+    synchronized void giveBack() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+}
@@ -0,0 +1,31 @@
+package com.checkend;
+
+import java.util.List;
+
+/**
+ * Delivers notices on behalf of the SDK.
+ * Implement this interface to route notices somewhere other than the Checkend API,
+ * and select it with {@link Configuration.Builder#transport(Transport)}.
+ *
+ * <p>Implementations must be thread-safe. The SDK ships {@link Client} (HTTP, the default),
+ * {@link InMemoryTransport} and {@link FileTransport}.
+ */
+public interface Transport {
+    /**
+     * Deliver a single notice.
+     * @return the outcome; a status code of 0 signals a transport failure that may be retried
+     */
+    Client.Response send(Notice notice);
+
+    /**
+     * Deliver several notices together.
+     * @return the outcome for the whole batch, optionally with per-notice results in the body
+     *         (see {@link Client.Response#itemStatuses()})
+     */
+    Client.Response sendBatch(List<Notice> notices);
+
+    /**
+     * Release any resources held by the transport. Called when the SDK is stopped.
+     */
+    default void close() {}
+}
@@ -0,0 +1,163 @@
+package com.checkend;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport that hands notices to a local relay agent over a Unix domain socket,
+ * so many processes on one host can share the agent's upstream connection instead
+ * of each making their own HTTPS calls.
+ * <p>
+ * Each notice is sent as one frame: a 4-byte big-endian payload length followed by
+ * the notice JSON, in the same format the HTTP transport sends. A batch is written
+ * as consecutive frames in a single write. The agent does not acknowledge frames;
+ * a notice counts as delivered (202) once it has been written to the socket.
+ * If the agent is unavailable, or stops reading for longer than the write timeout, the send
+ * fails with status 0 and the connection is re-established on the next send. When a batch
+ * fails partway, the frames already written may have been delivered: the response is then a
+ * 207 whose per-notice {@link Client.Response#itemStatuses() statuses} are 202 for those and
+ * 0 for the rest, so only the rest are retried.
+ */
+public final class UnixSocketTransport implements Transport {
+    private static final int DEFAULT_WRITE_TIMEOUT_MS = 15000;
+
+    private final Path socketPath;
+    private final UnixDomainSocketAddress address;
+    private final long writeTimeoutMs;
+    private final JsonWriter writer = new JsonWriter();
+    private int[] frameEnds = new int[16];
+    private SocketChannel channel;
+    private Selector selector;
+
+    public UnixSocketTransport(Path socketPath) {
+        this(socketPath, DEFAULT_WRITE_TIMEOUT_MS);
+    }
+
+    /**
+     * @param writeTimeoutMs how long a send may wait for the agent to read before it fails
+     */
+    public UnixSocketTransport(Path socketPath, int writeTimeoutMs) {
+        this.socketPath = socketPath;
+        this.address = UnixDomainSocketAddress.of(socketPath);
+        this.writeTimeoutMs = writeTimeoutMs;
+    }
+
+    @Override
+    public Client.Response send(Notice notice) {
+        return sendBatch(List.of(notice));
+    }
+
+    @Override
+    public synchronized Client.Response sendBatch(List<Notice> notices) {
+        writer.reset();
+        if (frameEnds.length < notices.size()) {
+            frameEnds = new int[notices.size()];
+        }
+        for (int i = 0; i < notices.size(); i++) {
+            int frame = writer.beginFrame();
+            notices.get(i).writeJson(writer);
+            writer.endFrame(frame);
+            frameEnds[i] = writer.size();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(writer.buffer(), 0, writer.size());
+        try {
+            if (channel == null) {
+                connect();
+            }
+            write(buffer);
+            return new Client.Response(202, "", null);
+        } catch (IOException e) {
+            closeQuietly();
+            return failed(notices.size(), buffer.position(), "Relay unavailable at " + socketPath + ": " + e.getMessage());
+        }
+    }
+
+    private void connect() throws IOException {
+        channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.connect(address);
+        // Written without blocking, so a stalled agent cannot hold the transport past the timeout
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_WRITE);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs);
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new SocketTimeoutException("write timed out after " + writeTimeoutMs + "ms");
+            }
+            selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+            selector.selectedKeys().clear();
+        }
+    }
+
+    /**
+     * The response to a batch whose write failed after {@code written} bytes. The frames
+     * written in full reached the agent; a frame cut short is discarded by it when the
+     * connection closes.
+     */
+    private Client.Response failed(int count, int written, String message) {
+        int delivered = 0;
+        while (delivered < count && frameEnds[delivered] <= written) {
+            delivered++;
+        }
+        if (delivered == 0) {
+            return new Client.Response(0, message, null);
+        }
+        JsonWriter body = new JsonWriter().beginObject().name("error").value(message).name("results").beginArray();
+        for (int i = 0; i < count; i++) {
+            body.beginObject().name("status").value(i < delivered ? 202 : 0).endObject();
+        }
+        body.endArray().endObject();
+        return new Client.Response(207, new String(body.toByteArray(), StandardCharsets.UTF_8), null);
+    }
+
+    /**
+     * Get the path of the relay agent's socket.
+     */
+    public Path getSocketPath() {
+        return socketPath;
+    }
+
+    /**
+     * Close the connection. It is reopened if more notices are sent afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing useful to do; the next send reconnects
+            }
+            channel = null;
+        }
+        if (selector != null) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Nothing useful to do; the next send reconnects
+            }
+            selector = null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.checkend;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads (Java 21+) through reflection, so the SDK still builds and runs
+ * on Java 17, where they are reported as unsupported.
+ */
+final class VirtualThreads {
+    private static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+    private static final Method BUILDER_NAME = lookup(builderClass(), "name", String.class, long.class);
+    private static final Method BUILDER_FACTORY = lookup(builderClass(), "factory");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR =
+        lookup(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private VirtualThreads() {}
+
+    /**
+     * Check whether this JVM supports virtual threads.
+     */
+    static boolean isSupported() {
+        return OF_VIRTUAL != null && BUILDER_NAME != null && BUILDER_FACTORY != null
+            && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread, named {@code prefix} followed by
+     * a counter, for each task.
+     *
+     * @return the executor, or null if virtual threads are not supported
+     */
+    static ExecutorService newExecutor(String prefix) {
+        if (!isSupported()) {
+            return null;
+        }
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 1L);
+            ThreadFactory factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Class<?> builderClass() {
+        try {
+            return Class.forName("java.lang.Thread$Builder");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method lookup(Class<?> type, String name, Class<?>... parameterTypes) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -1,145 +1,236 @@
 package com.checkend;
 
-import java.util.concurrent.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Background worker for async notice sending with rate limiting support.
+ *
+ * <p>A single dispatcher thread takes notices off the queue in order. With
+ * {@link Configuration#getMaxInFlight()} above 1, it hands each request to a
+ * {@link SenderPool} and keeps up to that many requests in flight; throttle and rate-limit
+ * state is shared by all senders. With {@link Configuration#isVirtualThreads()}, each request
+ * is sent on a virtual thread instead, still bounded by the in-flight window. Notices wait in a
+ * lock-free {@link RingBufferQueue}, so reporting threads never block each other on enqueue.
+ *
+ * <p>Failed notices are not retried inline: they wait in a {@link RetryScheduler} for a backoff
+ * with full jitter (or the server's {@code Retry-After}) while the dispatcher keeps sending
+ * other notices, and are sent again ahead of the queue once due.
+ *
+ * <p>With {@link Configuration#isDeferredBuild()}, notices can be handed over unbuilt through
+ * {@link #defer(Runnable)} and are built on a {@link DeferredBuilder} thread before being queued.
+ *
+ * <p>While rate limited, by a 429 or because the quota the server advertises in its
+ * {@code RateLimit-*} headers is used up, the dispatcher parks until the limit resets instead
+ * of polling. Notices stay where they are, in queue order, and are sent once it resumes.
+ *
+ * <p>With {@link Configuration#getRateLimit()} or {@link Configuration#getRateLimitPerErrorClass()}
+ * set, {@link Checkend} checks each error against the local rate through the worker before
+ * building a notice for it; errors over the rate are counted instead of sent, and a summary
+ * of them by error class is logged once a minute.
+ *
+ * <p>With {@link Configuration#getSpoolPath()} set, queued notices are also written to a
+ * {@link Spool} and only removed from it once delivered or dropped, so notices still queued
+ * when the worker stops are replayed by the next worker using the same file.
+ *
+ * <p>When the queue is full, by count or by {@link Configuration#getMaxQueueBytes() size},
+ * {@link Configuration#getOverflowPolicy()} decides which notice the {@link OverflowHandler}
+ * drops; it counts the drops by kind. A notice's size stays counted until it is sent or dropped, so notices
+ * in flight or awaiting a retry count against the size limit too.
  */
 public final class Worker {
-    private static final int[] RETRY_DELAYS_MS = {100, 200, 400};
-    private static final int MAX_RETRIES = 3;
-    private static final double BASE_THROTTLE = 1.05;
-    private static final long MAX_THROTTLE_MS = 100_000; // 100 seconds
-    private static final long DEFAULT_RATE_LIMIT_BACKOFF_MS = 60_000; // 1 minute
+    private static final long SUPPRESSED_SUMMARY_INTERVAL_MS = 60_000;
+    static final Client.Response STOPPED = new Client.Response(0, "Worker stopped", null);
 
     private final Configuration config;
-    private final Client client;
     private final Logger logger;
-    private final BlockingQueue<Notice> queue;
+    private final RingBufferQueue<Delivery> queue;
+    private final RetryScheduler retries;
+    private final Spool spool;
     private final ExecutorService executor;
+    private final SenderPool senders;
+    private final OverflowHandler overflow;
+    private final DeferredBuilder builder;
     private final AtomicBoolean running;
-    private final AtomicLong throttleDelayMs;
-    private final AtomicLong rateLimitedUntil;
+    // Set once stop() hands back what is left
+    private volatile boolean stopped;
+    private volatile boolean dispatcherDone;
+    private final AtomicBoolean handedBack = new AtomicBoolean();
+    private final NoticeShaper shaper;
+    private long nextSuppressedSummary;
+    private volatile Thread dispatcher;
+    private final Pending pending = new Pending();
 
+    /**
+     * Create a worker sending through the given HTTP client; kept for binary compatibility.
+     */
     public Worker(Configuration config, Client client) {
+        this(config, (Transport) client);
+    }
+
+    public Worker(Configuration config, Transport transport) {
         this.config = config;
-        this.client = client;
         this.logger = config.getLogger();
-        this.queue = new LinkedBlockingQueue<>(config.getMaxQueueSize());
+        this.queue = new RingBufferQueue<>(config.getMaxQueueSize());
         this.executor = Executors.newSingleThreadExecutor(r -> {
             Thread t = new Thread(r, "checkend-worker");
             t.setDaemon(true);
             return t;
         });
+        this.retries = new RetryScheduler(logger);
+        this.senders = new SenderPool(config, transport, retries);
         this.running = new AtomicBoolean(true);
-        this.throttleDelayMs = new AtomicLong(0);
-        this.rateLimitedUntil = new AtomicLong(0);
+        this.overflow = new OverflowHandler(config, queue, running);
+        this.builder = config.isDeferredBuild()
+            ? new DeferredBuilder(config.getMaxQueueSize(), pending, logger)
+            : null;
+        this.shaper = NoticeShaper.isEnabled(config)
+            ? new NoticeShaper(config.getRateLimit(), config.getRateLimitPerErrorClass())
+            : null;
+        this.nextSuppressedSummary = System.currentTimeMillis() + SUPPRESSED_SUMMARY_INTERVAL_MS;
+        this.spool = config.getSpoolPath() != null
+            ? Spool.open(config.getSpoolPath(), config.getSpoolSize(), logger)
+            : null;
+        if (spool != null) {
+            replaySpool();
+        }
         startWorker();
     }
 
+    private void replaySpool() {
+        for (Spool.Entry entry : spool.takeRecovered()) {
+            Delivery delivery = new Delivery(Notice.fromJson(entry.json()));
+            delivery.tracked(pending);
+            delivery.spooled(spool, entry);
+            if (!overflow.offerRecovered(delivery, entry.length())) {
+                logger.warn("Queue full, recovered notice dropped");
+                delivery.complete(new Client.Response(0, "Queue full", null));
+            }
+        }
+    }
+
     private void startWorker() {
         executor.submit(() -> {
-            while (running.get() || !queue.isEmpty()) {
-                try {
-                    // Check if we're rate limited
-                    long rateLimitEnd = rateLimitedUntil.get();
-                    if (rateLimitEnd > 0) {
-                        long waitTime = rateLimitEnd - System.currentTimeMillis();
-                        if (waitTime > 0) {
-                            logger.debug("Rate limited, waiting " + waitTime + "ms");
-                            Thread.sleep(Math.min(waitTime, 1000));
-                            continue;
-                        } else {
-                            rateLimitedUntil.set(0);
-                            logger.info("Rate limit period ended, resuming");
-                        }
-                    }
-
-                    // Apply throttle delay if set
-                    long throttle = throttleDelayMs.get();
-                    if (throttle > 0) {
-                        Thread.sleep(throttle);
-                    }
-
-                    Notice notice = queue.poll(100, TimeUnit.MILLISECONDS);
-                    if (notice != null) {
-                        sendWithRetry(notice);
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
+            dispatcher = Thread.currentThread();
+            try {
+                dispatchUntilStopped();
+            } finally {
+                dispatcherDone = true;
+                if (stopped) {
+                    // stop() gave up waiting for this thread and left the queue to it
+                    handBackQueued();
                 }
             }
         });
     }
 
-    private void sendWithRetry(Notice notice) {
-        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+    private void dispatchUntilStopped() {
+        // A batch taken off the queue but not yet allowed out by the rate limiter
+        List<Delivery> held = null;
+        while (running.get() || held != null || !queue.isEmpty() || !retries.isEmpty()) {
             try {
-                Client.Response response = client.send(notice);
-
-                if (response.isSuccess()) {
-                    logger.debug("Notice sent successfully");
-                    decreaseThrottle();
-                    return;
-                }
-
-                // Rate limited (429)
-                if (response.isRateLimited()) {
-                    long backoffMs = response.getRetryAfterMs(DEFAULT_RATE_LIMIT_BACKOFF_MS);
-                    logger.warn("Rate limited by server, backing off for " + backoffMs + "ms");
-                    rateLimitedUntil.set(System.currentTimeMillis() + backoffMs);
-                    increaseThrottle();
-                    // Re-queue the notice for later
-                    queue.offer(notice);
-                    return;
+                summarizeSuppressed(false);
+                long pauseMs = senders.rateLimitPauseMs();
+                if (pauseMs > 0) {
+                    if (!running.get()) {
+                        // Stopping while paused: leave the rest for stop() to hand back
+                        break;
+                    }
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Rate limited, pausing for " + pauseMs + "ms");
+                    }
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(pauseMs));
+                    if (Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                    continue;
                 }
 
-                // Client errors (4xx except 429): Don't retry
-                if (response.statusCode() >= 400 && response.statusCode() < 500) {
-                    logger.warn("Client error, not retrying: " + response.statusCode() + " - " + response.body());
-                    return;
+                List<Delivery> batch = held != null ? held : nextBatch();
+                held = null;
+                if (batch.isEmpty()) {
+                    continue;
                 }
-
-                // Server errors (5xx): Retry with exponential backoff
-                increaseThrottle();
-                if (attempt < MAX_RETRIES - 1) {
-                    logger.debug("Retrying after server error: " + response.statusCode());
-                    Thread.sleep(RETRY_DELAYS_MS[attempt]);
+                if (senders.tryAcquire(System.currentTimeMillis()) > 0) {
+                    held = batch;
+                    continue;
                 }
-
+                senders.dispatch(batch);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                return;
-            } catch (Exception e) {
-                logger.error("Error sending notice: " + e.getMessage());
-                increaseThrottle();
-                if (attempt < MAX_RETRIES - 1) {
-                    try {
-                        Thread.sleep(RETRY_DELAYS_MS[attempt]);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        return;
-                    }
-                }
+                break;
+            }
+        }
+        if (held != null) {
+            for (Delivery delivery : held) {
+                retries.schedule(delivery, 0);
             }
         }
-        logger.error("Failed to send notice after " + MAX_RETRIES + " attempts");
     }
 
-    private void increaseThrottle() {
-        long current = throttleDelayMs.get();
-        long newDelay = current == 0 ? 100 : (long) (current * BASE_THROTTLE);
-        throttleDelayMs.set(Math.min(newDelay, MAX_THROTTLE_MS));
+    /**
+     * Log the notices suppressed by the local rate limit, once a minute or when forced.
+     */
+    private void summarizeSuppressed(boolean force) {
+        if (shaper == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (!force && now < nextSuppressedSummary) {
+            return;
+        }
+        nextSuppressedSummary = now + SUPPRESSED_SUMMARY_INTERVAL_MS;
+        String summary = shaper.takeSummary();
+        if (summary != null) {
+            logger.warn(summary);
+        }
+    }
+
+    /**
+     * Take the next notices to send: retries that are due first, then queued notices, up to
+     * batchSize, waiting at most batchLingerMs after the first one for the batch to fill up.
+     */
+    private List<Delivery> nextBatch() throws InterruptedException {
+        int batchSize = Math.max(1, config.getBatchSize());
+        List<Delivery> batch = new ArrayList<>(batchSize);
+        fillBatch(batch, batchSize);
+        overflow.taken(batch);
+        return batch;
     }
 
-    private void decreaseThrottle() {
-        long current = throttleDelayMs.get();
-        if (current > 0) {
-            long newDelay = (long) (current / BASE_THROTTLE);
-            throttleDelayMs.set(newDelay < 10 ? 0 : newDelay);
+    private void fillBatch(List<Delivery> batch, int batchSize) throws InterruptedException {
+        retries.drainDue(batch, batchSize);
+        if (batch.isEmpty()) {
+            Delivery first = queue.poll(retries.pollTimeoutMs(), TimeUnit.MILLISECONDS);
+            if (first == null) {
+                retries.drainDue(batch, batchSize);
+                return;
+            }
+            batch.add(first);
+        }
+        if (batch.size() >= batchSize) {
+            return;
+        }
+        queue.drainTo(batch, batchSize - batch.size());
+
+        long deadline = System.currentTimeMillis() + config.getBatchLingerMs();
+        while (batch.size() < batchSize && running.get()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            Delivery next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
         }
     }
 
@@ -148,14 +239,90 @@ public final class Worker {
      * @return true if queued successfully, false if queue is full
      */
     public boolean enqueue(Notice notice) {
+        return offer(new Delivery(notice));
+    }
+
+    /**
+     * Queue a notice for sending and get a future for its outcome.
+     * The future completes with the server's response once the notice is acknowledged,
+     * rejected, or has exhausted its retries, and with a status code of 0 if it is dropped
+     * before it could be sent (queue full or worker stopped).
+     */
+    public CompletableFuture<Client.Response> submit(Notice notice) {
+        CompletableFuture<Client.Response> future = new CompletableFuture<>();
+        offer(new Delivery(notice, future));
+        return future;
+    }
+
+    /**
+     * Run {@code build} on the worker's builder thread to build a notice and queue it, keeping
+     * the caller out of the work. Until it has run, it counts as pending for {@link #flush()}.
+     * Requires {@link Configuration#isDeferredBuild()}.
+     *
+     * @return false if the builder's backlog is full (its size is maxQueueSize) or the worker
+     *         stopped, in which case {@code build} has not run and is left to the caller
+     */
+    public boolean defer(Runnable build) {
+        if (builder == null) {
+            throw new IllegalStateException("Deferred building is not enabled");
+        }
+        return running.get() && builder.defer(build);
+    }
+
+    /**
+     * Wait up to {@code timeoutMs} for the notices handed to {@link #defer(Runnable)} to be built.
+     *
+     * @return false if some were still being built when the timeout passed
+     */
+    boolean awaitBuilt(long timeoutMs) {
+        return builder == null || builder.awaitBuilt(timeoutMs);
+    }
+
+    /**
+     * Stop taking notices to build and wait, up to the shutdown timeout, for those already
+     * handed to {@link #defer(Runnable)} to be built. Called by {@link #stop()}, and before it by
+     * callers whose build step feeds something that must be closed before the worker stops.
+     */
+    void stopBuilding() {
+        if (builder != null) {
+            builder.stop(System.currentTimeMillis() + config.getShutdownTimeout());
+        }
+    }
+
+    /**
+     * Check an error against the local {@link Configuration#getRateLimit() rate limits},
+     * counting it as suppressed if it is over them.
+     *
+     * @return true if a notice may be built and sent for it
+     */
+    boolean admit(Throwable exception) {
+        return shaper == null || shaper.tryAcquire(exception.getClass().getName());
+    }
+
+    private boolean offer(Delivery delivery) {
+        delivery.tracked(pending);
         if (!running.get()) {
+            delivery.complete(STOPPED);
             return false;
         }
-        boolean added = queue.offer(notice);
-        if (!added) {
-            logger.warn("Queue full, notice dropped");
+        Spool.Entry entry = null;
+        if (spool != null) {
+            entry = spool.append(delivery.notice());
+            if (entry != null) {
+                delivery.spooled(spool, entry);
+            } else {
+                logger.debug("Spool full, notice kept in memory only");
+            }
+        }
+        if (!overflow.offer(delivery, entry)) {
+            return false;
         }
-        return added;
+        // stop() may have handed back the queue between the check above and the insert
+        if (!running.get() && overflow.takeBack(delivery)) {
+            delivery.abandon(STOPPED);
+            return false;
+        }
+        return true;
     }
 
     /**
@@ -166,33 +333,79 @@ public final class Worker {
     }
 
     /**
-     * Wait for all pending notices to be sent with timeout.
+     * Wait for all pending notices to be sent with timeout. A notice is pending from the
+     * moment it is queued until it is delivered or dropped, including while its request
+     * is in flight or waiting for a retry; the flush returns as soon as none are left.
      */
     public void flush(long timeoutMs) {
-        long deadline = System.currentTimeMillis() + timeoutMs;
-        while (!queue.isEmpty() && System.currentTimeMillis() < deadline) {
-            try {
-                Thread.sleep(50);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            }
-        }
+        flushWithResult(timeoutMs);
+    }
+
+    /**
+     * Wait as {@link #flush(long)} does and report the outcome.
+     *
+     * @return the notices delivered and dropped since the previous flush, and those still pending
+     */
+    public FlushResult flushWithResult(long timeoutMs) {
+        return pending.await(timeoutMs);
     }
 
     /**
      * Stop the worker gracefully.
      */
     public void stop() {
+        // Let notices still being built make it into the queue before it stops taking them
+        stopBuilding();
+        long deadline = System.currentTimeMillis() + config.getShutdownTimeout();
         running.set(false);
-        executor.shutdown();
+        // Wake the dispatcher if it is paused for a rate limit
+        Thread thread = dispatcher;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        awaitShutdown(executor, deadline);
+        senders.stop(deadline);
+
+        // Anything still queued will not be sent; release whoever is waiting on it
+        // but leave it in the spool for the next run
+        stopped = true;
+        if (dispatcherDone) {
+            handBackQueued();
+        } else {
+            logger.warn("Worker still sending after the shutdown timeout, "
+                + "queued notices are handed back once it finishes");
+        }
+        retries.stop();
+        summarizeSuppressed(true);
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    /**
+     * Abandon the notices left in the queue. The queue has a single consumer, so this only
+     * runs once the dispatcher has finished: on the stopping thread, or on the dispatcher
+     * itself if it outlived the shutdown timeout, whichever sees the other done.
+     */
+    private void handBackQueued() {
+        if (!handedBack.compareAndSet(false, true)) {
+            return;
+        }
+        Delivery delivery;
+        while ((delivery = queue.poll()) != null) {
+            delivery.abandon(STOPPED);
+        }
+    }
+
+    static void awaitShutdown(ExecutorService service, long deadline) {
+        service.shutdown();
         try {
-            int shutdownTimeout = config.getShutdownTimeout();
-            if (!executor.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
-                executor.shutdownNow();
+            long remaining = Math.max(0, deadline - System.currentTimeMillis());
+            if (!service.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+                service.shutdownNow();
             }
         } catch (InterruptedException e) {
-            executor.shutdownNow();
+            service.shutdownNow();
             Thread.currentThread().interrupt();
         }
     }
@@ -211,17 +424,76 @@ public final class Worker {
         return queue.size();
     }
 
+    /**
+     * Get the number of notices queued, in flight or awaiting a retry.
+     */
+    public long pendingCount() {
+        return pending.count();
+    }
+
+    /**
+     * Get the number of requests currently in flight.
+     */
+    public int inFlightCount() {
+        return senders.inFlightCount();
+    }
+
+    /**
+     * Total size of the notices waiting to be sent, in flight or awaiting a retry, as counted
+     * against {@link Configuration#getMaxQueueBytes()}. Always 0 without a byte limit.
+     */
+    public long queuedBytes() {
+        return overflow.queuedBytes();
+    }
+
+    /**
+     * Number of incoming notices dropped because the queue was full (including
+     * {@link OverflowPolicy#BLOCK} timeouts).
+     */
+    public long droppedNewestCount() {
+        return overflow.droppedNewestCount();
+    }
+
+    /**
+     * Number of queued notices dropped by {@link OverflowPolicy#DROP_OLDEST}.
+     */
+    public long droppedOldestCount() {
+        return overflow.droppedOldestCount();
+    }
+
+    /**
+     * Number of queued notices dropped by {@link OverflowPolicy#DROP_MOST_DUPLICATED}.
+     */
+    public long droppedDuplicateCount() {
+        return overflow.droppedDuplicateCount();
+    }
+
+    /**
+     * Number of errors not sent because they were over the local
+     * {@link Configuration#getRateLimit() rate limits}.
+     */
+    public long suppressedCount() {
+        return shaper != null ? shaper.suppressedCount() : 0;
+    }
+
+    /**
+     * Number of notices that had to wait for room under {@link OverflowPolicy#BLOCK}.
+     */
+    public long blockedCount() {
+        return overflow.blockedCount();
+    }
+
     /**
      * Check if the worker is currently rate limited.
      */
     public boolean isRateLimited() {
-        return rateLimitedUntil.get() > System.currentTimeMillis();
+        return senders.isRateLimited();
     }
 
     /**
      * Get the current throttle delay in milliseconds.
      */
     public long getThrottleDelayMs() {
-        return throttleDelayMs.get();
+        return retries.throttleDelayMs();
     }
 }
@@ -0,0 +1,230 @@
+package com.checkend.relay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits a request body into the raw bytes of each notice without building it.
+ * The body is either a single JSON object or an array of objects, as sent by
+ * the SDK's HTTP transport with and without batching. Every notice is checked to be
+ * well-formed JSON, since it is later spliced as-is into the batches sent upstream,
+ * where one malformed notice would fail the whole batch.
+ */
+final class NoticeSplitter {
+    // Deeper nesting is rejected rather than risking the stack
+    private static final int MAX_DEPTH = 256;
+
+    private NoticeSplitter() {}
+
+    /**
+     * Split the first {@code length} bytes of {@code body} into one JSON object per notice.
+     *
+     * @throws IllegalArgumentException if the body is not an object or an array of objects
+     */
+    static List<byte[]> split(byte[] body, int length) {
+        List<byte[]> notices = new ArrayList<>();
+        int pos = skipWhitespace(body, 0, length);
+        if (pos < length && body[pos] == '{') {
+            int end = skipObject(body, pos, length, 1);
+            notices.add(Arrays.copyOfRange(body, pos, end));
+            pos = end;
+        } else if (pos < length && body[pos] == '[') {
+            pos = skipWhitespace(body, pos + 1, length);
+            if (pos < length && body[pos] == ']') {
+                pos++;
+            } else {
+                while (true) {
+                    if (pos >= length || body[pos] != '{') {
+                        throw new IllegalArgumentException("Expected a notice object at offset " + pos);
+                    }
+                    int end = skipObject(body, pos, length, 1);
+                    notices.add(Arrays.copyOfRange(body, pos, end));
+                    pos = skipWhitespace(body, end, length);
+                    if (pos < length && body[pos] == ',') {
+                        pos = skipWhitespace(body, pos + 1, length);
+                    } else if (pos < length && body[pos] == ']') {
+                        pos++;
+                        break;
+                    } else {
+                        throw new IllegalArgumentException("Expected ',' or ']' at offset " + pos);
+                    }
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Expected a notice object or array");
+        }
+        if (skipWhitespace(body, pos, length) != length) {
+            throw new IllegalArgumentException("Unexpected data after offset " + pos);
+        }
+        return notices;
+    }
+
+    /**
+     * Check that {@code frame} holds exactly one well-formed JSON object, as a notice must.
+     */
+    static boolean isNotice(byte[] frame) {
+        int pos = skipWhitespace(frame, 0, frame.length);
+        if (pos >= frame.length || frame[pos] != '{') {
+            return false;
+        }
+        try {
+            return skipWhitespace(frame, skipObject(frame, pos, frame.length, 1), frame.length) == frame.length;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Find the offset just past the well-formed JSON value starting at {@code pos}.
+     */
+    private static int skipValue(byte[] body, int pos, int length, int depth) {
+        if (pos >= length) {
+            throw new IllegalArgumentException("Unexpected end of notice at offset " + pos);
+        }
+        switch (body[pos]) {
+            case '{':
+                return skipObject(body, pos, length, depth + 1);
+            case '[':
+                return skipArray(body, pos, length, depth + 1);
+            case '"':
+                return skipString(body, pos, length);
+            case 't':
+                return skipLiteral(body, pos, length, "true");
+            case 'f':
+                return skipLiteral(body, pos, length, "false");
+            case 'n':
+                return skipLiteral(body, pos, length, "null");
+            default:
+                return skipNumber(body, pos, length);
+        }
+    }
+
+    private static int skipObject(byte[] body, int start, int length, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Notice nested too deeply at offset " + start);
+        }
+        int pos = skipWhitespace(body, start + 1, length);
+        if (pos < length && body[pos] == '}') {
+            return pos + 1;
+        }
+        while (true) {
+            if (pos >= length || body[pos] != '"') {
+                throw new IllegalArgumentException("Expected a member name at offset " + pos);
+            }
+            pos = skipWhitespace(body, skipString(body, pos, length), length);
+            if (pos >= length || body[pos] != ':') {
+                throw new IllegalArgumentException("Expected ':' at offset " + pos);
+            }
+            pos = skipValue(body, skipWhitespace(body, pos + 1, length), length, depth);
+            pos = skipWhitespace(body, pos, length);
+            if (pos < length && body[pos] == ',') {
+                pos = skipWhitespace(body, pos + 1, length);
+            } else if (pos < length && body[pos] == '}') {
+                return pos + 1;
+            } else {
+                throw new IllegalArgumentException("Expected ',' or '}' at offset " + pos);
+            }
+        }
+    }
+
+    private static int skipArray(byte[] body, int start, int length, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Notice nested too deeply at offset " + start);
+        }
+        int pos = skipWhitespace(body, start + 1, length);
+        if (pos < length && body[pos] == ']') {
+            return pos + 1;
+        }
+        while (true) {
+            pos = skipWhitespace(body, skipValue(body, pos, length, depth), length);
+            if (pos < length && body[pos] == ',') {
+                pos = skipWhitespace(body, pos + 1, length);
+            } else if (pos < length && body[pos] == ']') {
+                return pos + 1;
+            } else {
+                throw new IllegalArgumentException("Expected ',' or ']' at offset " + pos);
+            }
+        }
+    }
+
+    private static int skipString(byte[] body, int start, int length) {
+        for (int i = start + 1; i < length; i++) {
+            byte b = body[i];
+            if (b == '"') {
+                return i + 1;
+            }
+            if (b >= 0 && b < 0x20) {
+                throw new IllegalArgumentException("Control character in string at offset " + i);
+            }
+            if (b == '\\') {
+                i++;
+                if (i >= length || "\"\\/bfnrtu".indexOf(body[i]) < 0) {
+                    throw new IllegalArgumentException("Invalid escape at offset " + i);
+                }
+                if (body[i] == 'u') {
+                    for (int digit = 0; digit < 4; digit++) {
+                        i++;
+                        if (i >= length || Character.digit(body[i], 16) < 0) {
+                            throw new IllegalArgumentException("Invalid unicode escape at offset " + i);
+                        }
+                    }
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string at offset " + start);
+    }
+
+    private static int skipNumber(byte[] body, int start, int length) {
+        int pos = start;
+        if (pos < length && body[pos] == '-') {
+            pos++;
+        }
+        if (pos < length && body[pos] == '0') {
+            pos++;
+        } else {
+            pos = skipDigits(body, pos, length);
+        }
+        if (pos < length && body[pos] == '.') {
+            pos = skipDigits(body, pos + 1, length);
+        }
+        if (pos < length && (body[pos] == 'e' || body[pos] == 'E')) {
+            pos++;
+            if (pos < length && (body[pos] == '+' || body[pos] == '-')) {
+                pos++;
+            }
+            pos = skipDigits(body, pos, length);
+        }
+        return pos;
+    }
+
+    /**
+     * Skip one or more digits.
+     */
+    private static int skipDigits(byte[] body, int start, int length) {
+        int pos = start;
+        while (pos < length && body[pos] >= '0' && body[pos] <= '9') {
+            pos++;
+        }
+        if (pos == start) {
+            throw new IllegalArgumentException("Expected a digit at offset " + start);
+        }
+        return pos;
+    }
+
+    private static int skipLiteral(byte[] body, int start, int length, String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            if (start + i >= length || body[start + i] != literal.charAt(i)) {
+                throw new IllegalArgumentException("Invalid literal at offset " + start);
+            }
+        }
+        return start + literal.length();
+    }
+
+    private static int skipWhitespace(byte[] body, int pos, int length) {
+        while (pos < length && (body[pos] == ' ' || body[pos] == '\n' || body[pos] == '\r' || body[pos] == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+}
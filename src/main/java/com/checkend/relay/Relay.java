@@ -0,0 +1,308 @@
+package com.checkend.relay;
+
+import com.checkend.Client;
+import com.checkend.Configuration;
+import com.checkend.Logger;
+import com.checkend.Notice;
+import com.checkend.Transport;
+import com.checkend.Worker;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Standalone relay that accepts notices from many local processes and forwards them
+ * upstream through a single {@link Worker}, so one connection, queue and retry/rate-limit
+ * state is shared per host instead of per process.
+ * <p>
+ * Notices are accepted over HTTP on localhost, in the same format as the ingest API
+ * (point the SDK's {@code endpoint} at the relay), and over a Unix domain socket using
+ * the framing of {@link com.checkend.UnixSocketTransport}. They are forwarded verbatim;
+ * the relay's own API key is used upstream and incoming keys are ignored.
+ * <p>
+ * Relayed notices are exempt from the relay's {@code rateLimit} and
+ * {@code rateLimitPerErrorClass}: each process has already applied its own before sending,
+ * and the upstream quota the server advertises still paces what the relay sends.
+ * <p>
+ * Run with {@code java -cp checkend.jar com.checkend.relay.Relay [--port 8717] [--socket path]};
+ * the upstream connection is configured through the usual {@code CHECKEND_*} environment variables.
+ */
+public final class Relay implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8717;
+    // Largest payload accepted, as a socket frame or as an HTTP body before and after gunzip
+    private static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+
+    private final Logger logger;
+    private final Transport upstream;
+    private final Worker worker;
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private HttpServer httpServer;
+    private ServerSocketChannel socketServer;
+    private Path socketPath;
+    private volatile boolean running = true;
+
+    /**
+     * Create a relay forwarding to the endpoint (or transport) in the given configuration.
+     * Use {@link #defaults()} for batching and compression suited to coalescing many senders.
+     */
+    public Relay(Configuration config) {
+        this.logger = config.getLogger();
+        this.upstream = config.getTransport() != null ? config.getTransport() : new Client(config);
+        this.worker = new Worker(config, upstream);
+    }
+
+    /**
+     * A configuration builder with the relay's defaults: larger batches, compression and a deeper queue.
+     * The API key, endpoint and proxy are read from the environment as usual.
+     */
+    public static Configuration.Builder defaults() {
+        return new Configuration.Builder()
+                .batchSize(100)
+                .batchLingerMs(200)
+                .compression(true)
+                .maxQueueSize(10000);
+    }
+
+    /**
+     * Start accepting notices over HTTP on the loopback interface.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @return the address actually bound
+     */
+    public synchronized InetSocketAddress listenHttp(int port) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/", this::handle);
+        httpServer.start();
+        logger.info("Relay listening on http://" + httpServer.getAddress().getHostString()
+            + ":" + httpServer.getAddress().getPort());
+        return httpServer.getAddress();
+    }
+
+    /**
+     * Start accepting length-prefixed notice frames on a Unix domain socket.
+     * The socket file is removed when the relay is closed.
+     */
+    public synchronized void listenUnix(Path socket) throws IOException {
+        socketServer = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        socketServer.bind(UnixDomainSocketAddress.of(socket));
+        socketPath = socket;
+        Thread acceptor = new Thread(this::acceptConnections, "checkend-relay-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Relay listening on " + socket);
+    }
+
+    /**
+     * Number of notices accepted from local senders.
+     */
+    public long receivedCount() {
+        return received.get();
+    }
+
+    /**
+     * Number of notices dropped because the upstream queue was full.
+     */
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Number of socket frames and HTTP request bodies rejected because they were not
+     * well-formed notices.
+     */
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Stop listening, then deliver the queued notices upstream within the shutdown timeout.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        if (socketServer != null) {
+            try {
+                socketServer.close();
+                Files.deleteIfExists(socketPath);
+            } catch (IOException e) {
+                logger.warn("Failed to close relay socket: " + e.getMessage());
+            }
+            socketServer = null;
+        }
+        worker.stop();
+        upstream.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                reply(exchange, 405, "{\"error\":\"Method not allowed\"}");
+                return;
+            }
+            String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (contentLength != null && parseLength(contentLength) > MAX_PAYLOAD_BYTES) {
+                reply(exchange, 413, "{\"error\":\"Payload too large\"}");
+                return;
+            }
+            byte[] body;
+            try (InputStream in = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))
+                    ? new GZIPInputStream(exchange.getRequestBody())
+                    : exchange.getRequestBody()) {
+                // Bounds chunked bodies, and compressed ones once inflated
+                body = in.readNBytes(MAX_PAYLOAD_BYTES + 1);
+            }
+            if (body.length > MAX_PAYLOAD_BYTES) {
+                reply(exchange, 413, "{\"error\":\"Payload too large\"}");
+                return;
+            }
+            List<byte[]> notices;
+            try {
+                notices = NoticeSplitter.split(body, body.length);
+            } catch (IllegalArgumentException e) {
+                rejected.incrementAndGet();
+                logger.warn("Relay rejected malformed notice payload: " + e.getMessage());
+                reply(exchange, 400, "{\"error\":\"Invalid notice payload\"}");
+                return;
+            }
+            int accepted = 0;
+            for (byte[] notice : notices) {
+                if (forward(notice)) {
+                    accepted++;
+                }
+            }
+            // Partially accepted batches are not retried by the sender, to avoid duplicates
+            if (accepted == 0 && !notices.isEmpty()) {
+                reply(exchange, 503, "{\"error\":\"Relay queue full\"}");
+            } else {
+                reply(exchange, 202, "{}");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static long parseLength(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                SocketChannel connection = socketServer.accept();
+                Thread reader = new Thread(() -> readFrames(connection), "checkend-relay-connection");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    logger.error("Relay failed to accept connection: " + e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private void readFrames(SocketChannel connection) {
+        try (connection; DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(connection)))) {
+            while (running) {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+                    logger.error("Relay received invalid frame length " + length + "; closing connection");
+                    return;
+                }
+                byte[] notice = new byte[length];
+                in.readFully(notice);
+                if (!NoticeSplitter.isNotice(notice)) {
+                    // Dropped here, so it cannot fail the upstream batch it would be sent in
+                    rejected.incrementAndGet();
+                    logger.warn("Relay rejected a frame that is not a JSON notice object");
+                    continue;
+                }
+                forward(notice);
+            }
+        } catch (EOFException e) {
+            // Sender closed the connection
+        } catch (IOException e) {
+            if (running) {
+                logger.warn("Relay connection failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean forward(byte[] notice) {
+        received.incrementAndGet();
+        if (worker.enqueue(Notice.fromJson(notice))) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = -1;
+        Path socket = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--port".equals(arg) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("--socket".equals(arg) && i + 1 < args.length) {
+                socket = Path.of(args[++i]);
+            } else {
+                System.err.println("Usage: Relay [--port <port>] [--socket <path>]");
+                System.exit(2);
+            }
+        }
+        if (port < 0 && socket == null) {
+            port = DEFAULT_PORT;
+        }
+
+        Relay relay = new Relay(defaults().build());
+        Runtime.getRuntime().addShutdownHook(new Thread(relay::close, "checkend-relay-shutdown"));
+        if (port >= 0) {
+            relay.listenHttp(port);
+        }
+        if (socket != null) {
+            relay.listenUnix(socket);
+        }
+        new CountDownLatch(1).await();
+    }
+}
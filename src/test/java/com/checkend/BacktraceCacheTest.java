@@ -0,0 +1,96 @@
+package com.checkend;
+
+import org.junit.jupiter.api.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the serialized backtrace cache.
+ */
+class BacktraceCacheTest {
+
+    private static StackTraceElement[] frames(int line) {
+        return new StackTraceElement[] {
+            new StackTraceElement("a.Service", "handle", "Service.java", line),
+            new StackTraceElement("a.Controller", "post", null, 7),
+            new StackTraceElement("a.Main", "main", "Main.java", 3)
+        };
+    }
+
+    private static String write(BacktraceCache cache, StackTraceElement[] stackTrace, int length) {
+        JsonWriter writer = new JsonWriter();
+        cache.write(writer, stackTrace, length);
+        return new String(writer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testSerializesFramesLikeBacktraceMaps() {
+        String json = write(new BacktraceCache(16), frames(10), 2);
+
+        assertEquals(List.of(
+                Map.of("file", "Service.java", "line", 10L, "method", "a.Service.handle"),
+                Map.of("file", "Unknown", "line", 7L, "method", "a.Controller.post")),
+            JsonReader.parse(json));
+    }
+
+    @Test
+    void testCachesOnlyOnSecondSighting() {
+        BacktraceCache cache = new BacktraceCache(16);
+
+        String first = write(cache, frames(10), 3);
+        assertNull(cache.cached(frames(10), 3));
+
+        assertEquals(first, write(cache, frames(10), 3));
+        byte[] cached = cache.cached(frames(10), 3);
+        assertEquals(first, new String(cached, StandardCharsets.UTF_8));
+
+        assertEquals(first, write(cache, frames(10), 3));
+        assertSame(cached, cache.cached(frames(10), 3));
+        assertNull(cache.cached(frames(11), 3));
+        assertNull(cache.cached(frames(10), 2));
+    }
+
+    @Test
+    void testCachesOnlyTheBacktraceFromSurroundingJson() {
+        BacktraceCache cache = new BacktraceCache(16);
+        JsonWriter writer = new JsonWriter();
+
+        writer.beginArray();
+        cache.write(writer, frames(10), 1);
+        cache.write(writer, frames(10), 1);
+        writer.endArray();
+
+        String backtrace = new String(cache.cached(frames(10), 1), StandardCharsets.UTF_8);
+        assertEquals("[" + backtrace + "," + backtrace + "]", new String(writer.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testSharedSlotNeverReturnsOtherBacktrace() {
+        BacktraceCache cache = new BacktraceCache(1);
+
+        for (int line = 0; line < 20; line++) {
+            for (int sighting = 0; sighting < 2; sighting++) {
+                String json = write(cache, frames(line), 1);
+                assertTrue(json.contains("\"line\":" + line + ","), json);
+            }
+        }
+    }
+
+    @Test
+    void testNoticeJsonUsesCachedBacktrace() {
+        NoticeBuilder builder = new NoticeBuilder(new Configuration.Builder().apiKey("test-key").build());
+        RuntimeException error = new RuntimeException("boom");
+        Notice notice = builder.build(error);
+
+        JsonWriter writer = new JsonWriter();
+        notice.writeJson(writer);
+        Map<?, ?> parsed = (Map<?, ?>) JsonReader.parse(new String(writer.toByteArray(), StandardCharsets.UTF_8));
+
+        assertEquals(notice.toMap().get("backtrace").toString().replace(" ", ""),
+            parsed.get("backtrace").toString().replace(" ", ""));
+    }
+}
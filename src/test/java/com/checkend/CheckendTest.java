@@ -2,7 +2,14 @@ package com.checkend;
 
 import org.junit.jupiter.api.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -207,6 +214,202 @@ class CheckendTest {
         assertTrue(Testing.hasNotices());
     }
 
+    @Test
+    void testNotifyAsyncCapturesInTestingMode() {
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true));
+
+        Client.Response response = Checkend.notifyAsync(new RuntimeException("Async error")).join();
+
+        assertEquals(200, response.statusCode());
+        assertEquals("Async error", Testing.lastNotice().getMessage());
+    }
+
+    @Test
+    void testDeferredBuildRunsOnWorkerFromSnapshot() {
+        // Testing mode builds inline
+        Testing.teardown();
+        InMemoryTransport transport = new InMemoryTransport();
+        List<String> buildThreads = new ArrayList<>();
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .deferredBuild(true)
+                .transport(transport)
+                .addBeforeNotify(notice -> buildThreads.add(Thread.currentThread().getName())));
+
+        Map<String, Object> options = new HashMap<>(Map.of("context", Map.of("order", 42)));
+        Checkend.setContext(Map.of("step", "checkout", "password", "hunter2"));
+        Checkend.notify(new RuntimeException("Deferred error"), options);
+        Checkend.setContext(Map.of("step", "after"));
+        options.put("tags", List.of("late"));
+        FlushResult flushed = Checkend.flushWithResult(5000);
+
+        assertEquals(new FlushResult(1, 0, 0), flushed);
+        assertEquals(List.of("checkend-builder"), buildThreads);
+        Notice notice = transport.notices().get(0);
+        assertEquals("Deferred error", notice.getMessage());
+        assertEquals("checkout", notice.getContext().get("step"));
+        assertEquals(42, notice.getContext().get("order"));
+        assertEquals("[FILTERED]", notice.getContext().get("password"));
+        assertTrue(notice.getTags().isEmpty());
+    }
+
+    @Test
+    void testDeferredBuildWithSamplingAndDedupUsesFirstSnapshot() {
+        Testing.teardown();
+        InMemoryTransport transport = new InMemoryTransport();
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .deferredBuild(true)
+                .sampling(10)
+                .dedupWindow(60_000)
+                .transport(transport));
+
+        for (String step : List.of("first", "second", "third")) {
+            Checkend.setContext(Map.of("step", step));
+            Checkend.notify(new IllegalStateException("Repeated error"));
+        }
+        Checkend.setContext(Map.of("step", "after"));
+        FlushResult flushed = Checkend.flushWithResult(5000);
+
+        assertEquals(new FlushResult(1, 0, 0), flushed);
+        Notice notice = transport.notices().get(0);
+        assertEquals(3, notice.getOccurrences());
+        assertEquals(1, notice.getSampleWeight());
+        assertEquals("first", notice.getContext().get("step"));
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Test
+    void testDeferredBuildFallsBackInlineWhenBacklogFull() {
+        Testing.teardown();
+        InMemoryTransport transport = new InMemoryTransport();
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> buildThreads = new CopyOnWriteArrayList<>();
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .deferredBuild(true)
+                .maxQueueSize(1)
+                .overflowPolicy(OverflowPolicy.BLOCK, 5000)
+                .transport(transport)
+                .addBeforeNotify(notice -> {
+                    buildThreads.add(Thread.currentThread().getName());
+                    return Thread.currentThread().getName().equals("checkend-builder") ? awaitQuietly(release) : true;
+                }));
+
+        // The first is being built, the second waits in the backlog and the third finds it full
+        for (String message : List.of("first", "second", "third")) {
+            Checkend.notify(new RuntimeException(message));
+        }
+        release.countDown();
+        FlushResult flushed = Checkend.flushWithResult(5000);
+
+        assertEquals(new FlushResult(3, 0, 0), flushed);
+        assertEquals(3, buildThreads.size());
+        assertEquals(2, buildThreads.stream().filter("checkend-builder"::equals).count());
+        assertTrue(buildThreads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    void testDeferredBuildUsesConfigurationOfReport() throws InterruptedException {
+        Testing.teardown();
+        InMemoryTransport first = new InMemoryTransport();
+        InMemoryTransport second = new InMemoryTransport();
+        CountDownLatch release = new CountDownLatch(1);
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .deferredBuild(true)
+                .transport(first)
+                .addBeforeNotify(notice -> awaitQuietly(release)));
+
+        Checkend.notify(new RuntimeException("Before reconfigure"));
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .transport(second)
+                .addBeforeNotify(notice -> false));
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (first.notices().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, first.notices().size());
+        assertEquals("Before reconfigure", first.notices().get(0).getMessage());
+        assertTrue(second.notices().isEmpty());
+    }
+
+    @Test
+    void testRateLimitAppliesBeforeBuildingInEveryMode() throws Exception {
+        Testing.teardown();
+        List<String> warnings = new CopyOnWriteArrayList<>();
+        Logger logger = new Logger() {
+            @Override
+            public void debug(String message) { }
+            @Override
+            public void info(String message) { }
+            @Override
+            public void warn(String message) { warnings.add(message); }
+            @Override
+            public void error(String message) { }
+            @Override
+            public void error(String message, Throwable t) { }
+        };
+        InMemoryTransport transport = new InMemoryTransport();
+        AtomicInteger built = new AtomicInteger();
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .rateLimit(4)
+                .rateLimitPerErrorClass(2)
+                .logger(logger)
+                .transport(transport)
+                .addBeforeNotify(notice -> built.incrementAndGet() > 0));
+
+        for (int i = 0; i < 5; i++) {
+            Checkend.notify(new RuntimeException("noisy " + i));
+        }
+        assertTrue(Checkend.notifySync(new IllegalStateException("other")).isSuccess());
+        Client.Response overClass = Checkend.notifyAsync(new RuntimeException("over class")).get(1, TimeUnit.SECONDS);
+        Checkend.notify(new java.io.IOException("third class"));
+        Client.Response overGlobal = Checkend.notifySync(new IllegalArgumentException("over global"));
+        Checkend.flush(5000);
+        Checkend.stop();
+
+        assertEquals("Rate limit exceeded", overClass.body());
+        assertEquals("Rate limit exceeded", overGlobal.body());
+        assertEquals(4, built.get());
+        assertEquals(4, transport.notices().size());
+        assertTrue(warnings.contains("Rate limit suppressed 5 notices: "
+            + "java.lang.IllegalArgumentException x1, java.lang.RuntimeException x4"));
+    }
+
+    @Test
+    void testRateLimitOverGlobalKeepsErrorClassToken() throws Exception {
+        // One per second overall, and one every ten seconds per error class
+        NoticeShaper shaper = new NoticeShaper(1, 0.1);
+
+        assertTrue(shaper.tryAcquire("first"));
+        assertFalse(shaper.tryAcquire("second"));
+        Thread.sleep(1100);
+
+        assertTrue(shaper.tryAcquire("second"));
+        assertEquals(1, shaper.suppressedCount());
+    }
+
     @Test
     void testReset() {
         Checkend.configure(builder -> builder
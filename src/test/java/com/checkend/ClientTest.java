@@ -0,0 +1,204 @@
+package com.checkend;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the HTTP client against a local server.
+ */
+class ClientTest {
+    private TestServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new TestServer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private Configuration.Builder config() {
+        return new Configuration.Builder()
+                .apiKey("test-key")
+                .endpoint(server.endpoint());
+    }
+
+    static Notice notice(String message) {
+        Notice notice = new Notice();
+        notice.setErrorClass("java.lang.RuntimeException");
+        notice.setMessage(message);
+        notice.setEnvironment("test");
+        return notice;
+    }
+
+    @Test
+    void testSendPostsNotice() {
+        Client client = new Client(config().build());
+
+        Client.Response response = client.send(notice("Test error"));
+
+        assertTrue(response.isSuccess());
+        assertEquals(1, server.requests().size());
+        TestServer.Request request = server.requests().get(0);
+        assertEquals("/ingest/v1/errors", request.path());
+        assertEquals("test-key", request.ingestionKey());
+        assertEquals("application/json", request.contentType());
+        assertTrue(request.body().startsWith("{\"error_class\":\"java.lang.RuntimeException\",\"message\":\"Test error\""));
+    }
+
+    @Test
+    void testConnectionIsReused() {
+        Client client = new Client(config().build());
+
+        client.send(notice("first"));
+        client.send(notice("second"));
+
+        List<TestServer.Request> requests = server.requests();
+        assertEquals(2, requests.size());
+        assertEquals(requests.get(0).remotePort(), requests.get(1).remotePort());
+    }
+
+    @Test
+    void testLegacyHttpClient() {
+        Client client = new Client(config().legacyHttpClient(true).build());
+
+        Client.Response response = client.send(notice("Test error"));
+
+        assertTrue(response.isSuccess());
+        assertEquals(1, server.requests().size());
+        assertEquals("test-key", server.requests().get(0).ingestionKey());
+    }
+
+    @Test
+    void testRetryAfterHeader() {
+        server.respond(429, "", "30");
+        Client client = new Client(config().build());
+
+        Client.Response response = client.send(notice("Test error"));
+
+        assertTrue(response.isRateLimited());
+        assertEquals(30000, response.getRetryAfterMs(60000));
+    }
+
+    @Test
+    void testConnectionFailure() {
+        Client client = new Client(config().endpoint("http://127.0.0.1:1").build());
+
+        Client.Response response = client.send(notice("Test error"));
+
+        assertEquals(0, response.statusCode());
+        assertFalse(response.isSuccess());
+    }
+
+    @Test
+    void testSendBatchPostsArray() {
+        Client client = new Client(config().build());
+
+        Client.Response response = client.sendBatch(List.of(notice("first"), notice("second")));
+
+        assertTrue(response.isSuccess());
+        String body = server.requests().get(0).body();
+        assertTrue(body.startsWith("[{\"error_class\""));
+        assertTrue(body.contains("\"message\":\"first\""));
+        assertTrue(body.contains("},{\"error_class\""));
+        assertTrue(body.endsWith("}]"));
+    }
+
+    @Test
+    void testItemStatuses() {
+        Client.Response wrapped = new Client.Response(207,
+            "{\"results\":[{\"status\":201},{\"status\":422,\"error\":\"invalid\"}]}", null);
+        Client.Response bare = new Client.Response(200, "[{\"status\":201},{\"status\":503}]", null);
+        Client.Response none = new Client.Response(201, "{\"id\":1}", null);
+        Client.Response invalid = new Client.Response(201, "not json", null);
+
+        assertEquals(List.of(201, 422), wrapped.itemStatuses());
+        assertEquals(List.of(201, 503), bare.itemStatuses());
+        assertTrue(none.itemStatuses().isEmpty());
+        assertTrue(invalid.itemStatuses().isEmpty());
+    }
+
+    @Test
+    void testCompressionAboveThreshold() {
+        Client client = new Client(config().compression(true, 1000).build());
+        Notice large = notice("x".repeat(5000));
+
+        client.send(notice("small"));
+        client.send(large);
+        client.send(large);
+
+        List<TestServer.Request> requests = server.requests();
+        assertNull(requests.get(0).contentEncoding());
+        assertEquals("gzip", requests.get(1).contentEncoding());
+        assertTrue(requests.get(1).body().contains("\"message\":\"" + "x".repeat(5000) + "\""));
+        assertEquals(requests.get(1).body(), requests.get(2).body());
+    }
+
+    @Test
+    void testLegacyHttpClientCompression() {
+        Client client = new Client(config().legacyHttpClient(true).compression(true, 0).build());
+
+        Client.Response response = client.send(notice("Test error"));
+
+        assertTrue(response.isSuccess());
+        assertEquals("gzip", server.requests().get(0).contentEncoding());
+        assertTrue(server.requests().get(0).body().contains("\"message\":\"Test error\""));
+    }
+
+    @Test
+    void testCompressionDisabledByDefault() {
+        Client client = new Client(config().build());
+
+        client.send(notice("x".repeat(5000)));
+
+        assertNull(server.requests().get(0).contentEncoding());
+    }
+
+    @Test
+    void testSendsThroughProxy() {
+        server.respond(request -> request.proxyAuthorization() == null
+            ? new TestServer.Reply(407, "", null, Map.of("Proxy-Authenticate", "Basic realm=\"proxy\""))
+            : new TestServer.Reply(201, "{}", null));
+        int port = Integer.parseInt(server.endpoint().substring(server.endpoint().lastIndexOf(':') + 1));
+        Configuration config = config()
+                .endpoint("http://checkend.invalid")
+                .proxy("127.0.0.1", port, "user", "pass")
+                .build();
+
+        Client.Response modern = new Client(config).send(notice("modern"));
+        Client.Response legacy = new Client(new Configuration.Builder()
+                .apiKey("test-key")
+                .endpoint("http://checkend.invalid")
+                .proxy("127.0.0.1", port, "user", "pass")
+                .legacyHttpClient(true)
+                .build()).send(notice("legacy"));
+
+        assertTrue(modern.isSuccess());
+        assertTrue(legacy.isSuccess());
+        List<TestServer.Request> authorized = server.requests().stream()
+            .filter(request -> request.proxyAuthorization() != null)
+            .toList();
+        assertEquals(2, authorized.size());
+        for (TestServer.Request request : authorized) {
+            assertEquals("/ingest/v1/errors", request.path());
+            assertEquals("Basic dXNlcjpwYXNz", request.proxyAuthorization());
+        }
+    }
+
+    @Test
+    void testInvalidEndpointFailsOnSend() {
+        Client client = new Client(config().endpoint("not a url").build());
+
+        Client.Response response = client.send(notice("Test error"));
+
+        assertEquals(0, response.statusCode());
+        assertTrue(response.body().startsWith("Invalid endpoint"));
+    }
+}
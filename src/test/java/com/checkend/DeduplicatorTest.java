@@ -0,0 +1,159 @@
+package com.checkend;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.checkend.ClientTest.notice;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for collapsing repeated errors into one notice.
+ */
+class DeduplicatorTest {
+
+    @BeforeEach
+    void setUp() {
+        Checkend.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Checkend.reset();
+    }
+
+    private static RuntimeException failure(String message) {
+        return new RuntimeException(message);
+    }
+
+    @Test
+    void testCollapsesRepeatsWithinWindow() throws InterruptedException {
+        List<Notice> sent = new CopyOnWriteArrayList<>();
+        try (Deduplicator dedup = new Deduplicator(100, 10, sent::add)) {
+            Notice first = notice("boom");
+            dedup.open(1, first);
+            assertTrue(dedup.absorb(1, 1));
+            assertTrue(dedup.absorb(1, 1));
+            assertFalse(dedup.absorb(2, 1));
+            assertTrue(sent.isEmpty());
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (sent.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(List.of(first), sent);
+            assertEquals(3, first.getOccurrences());
+            assertFalse(first.getLastSeenAt().isBefore(first.getFirstSeenAt()));
+            assertEquals(0, dedup.size());
+            // The window is closed, so the next occurrence opens a new one
+            assertFalse(dedup.absorb(1, 1));
+        }
+    }
+
+    @Test
+    void testClosesOldestWindowWhenFull() {
+        List<Notice> sent = new CopyOnWriteArrayList<>();
+        try (Deduplicator dedup = new Deduplicator(60_000, 2, sent::add)) {
+            dedup.open(1, notice("first"));
+            dedup.open(2, notice("second"));
+            dedup.open(3, notice("third"));
+
+            assertEquals(2, dedup.size());
+            assertEquals(1, sent.size());
+            assertEquals("first", sent.get(0).getMessage());
+            assertEquals(1, sent.get(0).getOccurrences());
+        }
+        assertEquals(3, sent.size());
+    }
+
+    @Test
+    void testNotifySendsOneNoticeWithOccurrences() {
+        InMemoryTransport transport = new InMemoryTransport();
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .transport(transport)
+                .dedupWindow(60_000));
+
+        for (int i = 0; i < 50; i++) {
+            Checkend.notify(failure("request " + i));
+        }
+        Checkend.notify(new IllegalStateException("other"));
+        FlushResult flushed = Checkend.flushWithResult(5000);
+
+        assertEquals(new FlushResult(2, 0, 0), flushed);
+        List<Notice> notices = transport.notices();
+        Notice collapsed = notices.stream().filter(n -> n.getOccurrences() > 1).findFirst().orElseThrow();
+        assertEquals(50, collapsed.getOccurrences());
+        assertEquals("request 0", collapsed.getMessage());
+        Map<String, Object> json = collapsed.toMap();
+        assertEquals(50L, ((Number) json.get("occurrences")).longValue());
+        assertEquals(collapsed.getFirstSeenAt().toString(), json.get("first_seen_at"));
+        assertFalse(notices.stream().filter(n -> n != collapsed).findFirst().orElseThrow().toMap()
+            .containsKey("occurrences"));
+    }
+
+    @Test
+    void testStopSendsNoticesStillBeingBuilt() {
+        InMemoryTransport transport = new InMemoryTransport();
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .transport(transport)
+                .deferredBuild(true)
+                .dedupWindow(60_000)
+                .addBeforeNotify(notice -> {
+                    // Keep the builder busy so that stop() finds notices not yet built
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return true;
+                }));
+
+        for (int i = 0; i < 5; i++) {
+            Checkend.notify(failure("request " + i));
+        }
+        Checkend.stop();
+
+        List<Notice> notices = transport.notices();
+        assertEquals(1, notices.size());
+        assertEquals(5, notices.get(0).getOccurrences());
+    }
+
+    @Test
+    void testFlushWaitsForDeferredBuilds() {
+        InMemoryTransport transport = new InMemoryTransport();
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .transport(transport)
+                .deferredBuild(true)
+                .dedupWindow(60_000));
+
+        for (int i = 0; i < 20; i++) {
+            Checkend.notify(failure("request " + i));
+        }
+        FlushResult flushed = Checkend.flushWithResult(5000);
+
+        assertEquals(new FlushResult(1, 0, 0), flushed);
+        assertEquals(20, transport.notices().get(0).getOccurrences());
+    }
+
+    @Test
+    void testOpenAfterCloseSendsRightAway() {
+        List<Notice> sent = new CopyOnWriteArrayList<>();
+        Deduplicator dedup = new Deduplicator(60_000, 10, sent::add);
+        dedup.close();
+
+        Notice late = notice("late");
+        dedup.open(1, late);
+
+        assertEquals(List.of(late), sent);
+        assertEquals(0, dedup.size());
+    }
+}
@@ -0,0 +1,134 @@
+package com.checkend;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the built-in stack-trace fingerprinter.
+ */
+class FingerprinterTest {
+
+    private static RuntimeException failure(String message) {
+        return new RuntimeException(message);
+    }
+
+    private static long fingerprint(Throwable exception) {
+        return Fingerprinter.DEFAULT.fingerprint(exception, exception.getStackTrace());
+    }
+
+    private static StackTraceElement frame(String className, String method, int line) {
+        return new StackTraceElement(className, method, "Service.java", line);
+    }
+
+    @Test
+    void testSameErrorFromSameCodeMatches() {
+        List<RuntimeException> failures = List.of(failure("first"), failure("second"));
+
+        assertEquals(fingerprint(failures.get(0)), fingerprint(failures.get(1)));
+        assertNotEquals(fingerprint(failures.get(0)), fingerprint(new IllegalStateException("first")));
+        assertNotEquals(fingerprint(failures.get(0)), fingerprint(new RuntimeException("elsewhere")));
+    }
+
+    @Test
+    void testOnlyTopFramesCount() {
+        RuntimeException error = new RuntimeException();
+        StackTraceElement[] top = {frame("a.Service", "handle", 10), frame("a.Service", "run", 20)};
+        StackTraceElement[] deeper = {frame("a.Service", "handle", 10), frame("a.Service", "run", 21)};
+
+        assertEquals(Fingerprinter.topFrames(1).fingerprint(error, top),
+            Fingerprinter.topFrames(1).fingerprint(error, deeper));
+        assertNotEquals(Fingerprinter.topFrames(2).fingerprint(error, top),
+            Fingerprinter.topFrames(2).fingerprint(error, deeper));
+    }
+
+    @Test
+    void testNormalizesGeneratedNames() {
+        RuntimeException error = new RuntimeException();
+        Fingerprinter fingerprinter = Fingerprinter.topFrames(3);
+
+        StackTraceElement[] firstRun = {
+            frame("a.Service$$Lambda$41/0x0000000800c03000", "apply", -1),
+            frame("a.Service", "lambda$handle$3", 12),
+            frame("jdk.internal.reflect.GeneratedMethodAccessor7", "invoke", -1)
+        };
+        StackTraceElement[] secondRun = {
+            frame("a.Service$$Lambda$87/0x0000000800d41a20", "apply", -1),
+            frame("a.Service", "lambda$handle$5", 12),
+            frame("jdk.internal.reflect.GeneratedMethodAccessor19", "invoke", -1)
+        };
+        StackTraceElement[] otherCode = {
+            frame("a.Service$$Lambda$87/0x0000000800d41a20", "apply", -1),
+            frame("a.Service", "lambda$close$5", 12),
+            frame("jdk.internal.reflect.GeneratedMethodAccessor19", "invoke", -1)
+        };
+
+        assertEquals(fingerprinter.fingerprint(error, firstRun), fingerprinter.fingerprint(error, secondRun));
+        assertNotEquals(fingerprinter.fingerprint(error, firstRun), fingerprinter.fingerprint(error, otherCode));
+    }
+
+    @Test
+    void testNoticeBuilderUsesConfiguredFingerprinter() {
+        NoticeBuilder builder = new NoticeBuilder(new Configuration.Builder()
+                .apiKey("test-key")
+                .fingerprinter((exception, stackTrace) -> exception.getClass().getName().length())
+                .overflowPolicy(OverflowPolicy.DROP_MOST_DUPLICATED)
+                .build());
+        Supplier<RuntimeException> failure = () -> new RuntimeException("boom");
+
+        assertEquals("java.lang.RuntimeException".length(), builder.build(failure.get()).identity());
+        assertEquals(builder.identify(failure.get(), Map.of("fingerprint", "checkout")),
+            builder.build(failure.get(), Map.of("fingerprint", "checkout")).identity());
+        assertNotEquals(builder.identify(failure.get(), Map.of("fingerprint", "checkout")),
+            builder.identify(failure.get(), Map.of("fingerprint", "payment")));
+    }
+
+    @Test
+    void testIdentityComputedOnlyWhenNeeded() {
+        AtomicInteger fingerprinted = new AtomicInteger();
+        AtomicInteger stackTraces = new AtomicInteger();
+        Testing.teardown();
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .fingerprinter((exception, stackTrace) -> fingerprinted.incrementAndGet())
+                .transport(new InMemoryTransport()));
+        RuntimeException failure = new RuntimeException("boom") {
+            @Override
+            public StackTraceElement[] getStackTrace() {
+                stackTraces.incrementAndGet();
+                return super.getStackTrace();
+            }
+        };
+
+        Checkend.notify(failure);
+        Checkend.flush(5000);
+        assertEquals(0, fingerprinted.get());
+        assertEquals(1, stackTraces.get());
+
+        // Sampling needs the identity up front; the stack trace it was computed from is reused
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .sampling(10)
+                .fingerprinter((exception, stackTrace) -> fingerprinted.incrementAndGet())
+                .transport(new InMemoryTransport()));
+        Checkend.notify(failure);
+        Checkend.flush(5000);
+        Checkend.reset();
+        assertEquals(1, fingerprinted.get());
+        assertEquals(2, stackTraces.get());
+    }
+
+    @Test
+    void testHandBuiltNoticesUseClassAndMessage() {
+        assertEquals(ClientTest.notice("boom").identity(), ClientTest.notice("boom").identity());
+        assertNotEquals(ClientTest.notice("boom").identity(), ClientTest.notice("bang").identity());
+        assertEquals(0, Notice.fromJson("{}".getBytes()).identity());
+    }
+}
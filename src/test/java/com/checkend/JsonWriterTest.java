@@ -0,0 +1,193 @@
+package com.checkend;
+
+import org.junit.jupiter.api.*;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonWriterTest {
+
+    private static byte[] write(Object value) {
+        JsonWriter writer = new JsonWriter();
+        writer.value(value);
+        return writer.toByteArray();
+    }
+
+    private static void assertCompatible(Object value) {
+        byte[] expected = legacyToJson(value).getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(expected, write(value), () -> "Mismatch for " + value);
+    }
+
+    @Test
+    void testScalars() {
+        assertCompatible(null);
+        assertCompatible("plain");
+        assertCompatible("");
+        assertCompatible(42);
+        assertCompatible(-7L);
+        assertCompatible(Long.MIN_VALUE);
+        assertCompatible(Long.MAX_VALUE);
+        assertCompatible(3.25);
+        assertCompatible(Double.NaN);
+        assertCompatible(new BigDecimal("1.50"));
+        assertCompatible(true);
+        assertCompatible(false);
+    }
+
+    @Test
+    void testEscaping() {
+        assertCompatible("quote \" backslash \\ slash /");
+        assertCompatible("\b\f\n\r\t");
+        assertCompatible("\u0000\u0001\u001f\u007f");
+        assertCompatible("café € 中文");
+        assertCompatible("emoji 😀");
+        assertCompatible("lone \ud83d high and \ude00 low");
+        assertCompatible("trailing high \ud83d");
+    }
+
+    @Test
+    void testNestedStructures() {
+        Map<String, Object> inner = new LinkedHashMap<>();
+        inner.put("id", 123);
+        inner.put("tags", List.of("a", "b"));
+        inner.put("empty", Map.of());
+        inner.put("nothing", null);
+
+        Map<String, Object> outer = new LinkedHashMap<>();
+        outer.put("inner", inner);
+        outer.put("list", List.of(1, List.of(2, 3), Map.of("k", "v")));
+        outer.put("object", new StringBuilder("to\"String"));
+        outer.put("emptyList", List.of());
+
+        assertCompatible(outer);
+    }
+
+    @Test
+    void testNoticeMap() {
+        Notice notice = new Notice();
+        notice.setErrorClass("java.lang.IllegalStateException");
+        notice.setMessage("Something \"bad\"\nhappened");
+        notice.setEnvironment("test");
+        notice.setTags(List.of("critical"));
+        notice.setContext(new LinkedHashMap<>(Map.of("order_id", 123)));
+
+        assertCompatible(notice.toMap());
+    }
+
+    @Test
+    void testNoticeWriteJsonMatchesToMap() {
+        Configuration config = new Configuration.Builder().apiKey("test-key").appName("app").build();
+        Notice notice = new NoticeBuilder(config).build(new IllegalStateException("boom"), Map.of(
+                "fingerprint", "fp",
+                "tags", List.of("critical"),
+                "context", Map.of("order_id", 123)
+        ));
+
+        JsonWriter writer = new JsonWriter();
+        notice.writeJson(writer);
+
+        assertArrayEquals(write(notice.toMap()), writer.toByteArray());
+    }
+
+    @Test
+    void testNoticeWriteJsonUsesModifiedBacktrace() {
+        Configuration config = new Configuration.Builder().apiKey("test-key").build();
+        Notice notice = new NoticeBuilder(config).build(new RuntimeException("boom"));
+        int frames = notice.getBacktrace().size();
+        notice.getBacktrace().remove(0);
+
+        JsonWriter writer = new JsonWriter();
+        notice.writeJson(writer);
+
+        assertEquals(frames - 1, notice.getBacktrace().size());
+        assertArrayEquals(write(notice.toMap()), writer.toByteArray());
+    }
+
+    @Test
+    void testJoinedStringValue() {
+        JsonWriter writer = new JsonWriter();
+        writer.value("com.example.Foo", '.', "bar\"");
+
+        assertEquals("\"com.example.Foo.bar\\\"\"", new String(writer.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testResetReusesWriter() {
+        JsonWriter writer = new JsonWriter();
+        writer.value(Map.of("first", 1));
+        writer.reset();
+        writer.value(List.of("second"));
+
+        assertEquals("[\"second\"]", new String(writer.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testLargeValueGrowsBuffer() {
+        String large = "x".repeat(100_000);
+
+        assertCompatible(List.of(large, large));
+    }
+
+    /**
+     * The string-based serializer the SDK used before JsonWriter, kept as the compatibility reference.
+     */
+    private static String legacyToJson(Object obj) {
+        if (obj == null) {
+            return "null";
+        }
+        if (obj instanceof String) {
+            return "\"" + legacyEscape((String) obj) + "\"";
+        }
+        if (obj instanceof Number || obj instanceof Boolean) {
+            return obj.toString();
+        }
+        if (obj instanceof Map) {
+            StringBuilder sb = new StringBuilder("{");
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) obj).entrySet()) {
+                if (!first) sb.append(",");
+                first = false;
+                sb.append("\"").append(legacyEscape(entry.getKey().toString())).append("\":");
+                sb.append(legacyToJson(entry.getValue()));
+            }
+            return sb.append("}").toString();
+        }
+        if (obj instanceof Iterable) {
+            StringBuilder sb = new StringBuilder("[");
+            boolean first = true;
+            for (Object item : (Iterable<?>) obj) {
+                if (!first) sb.append(",");
+                first = false;
+                sb.append(legacyToJson(item));
+            }
+            return sb.append("]").toString();
+        }
+        return "\"" + legacyEscape(obj.toString()) + "\"";
+    }
+
+    private static String legacyEscape(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\b' -> sb.append("\\b");
+                case '\f' -> sb.append("\\f");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 32) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
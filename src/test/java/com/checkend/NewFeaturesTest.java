@@ -2,6 +2,7 @@ package com.checkend;
 
 import org.junit.jupiter.api.*;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -168,6 +169,8 @@ class NewFeaturesTest {
         assertNotNull(nullLogger);
         assertTrue(defaultLogger instanceof Logger.DefaultLogger);
         assertTrue(nullLogger instanceof Logger.NullLogger);
+        assertTrue(defaultLogger.isDebugEnabled());
+        assertFalse(nullLogger.isDebugEnabled());
     }
 
     // ========== App Metadata Tests ==========
@@ -297,6 +300,34 @@ class NewFeaturesTest {
         assertEquals(60000, invalidRetryAfter.getRetryAfterMs(60000));
     }
 
+    @Test
+    void testResponseRetryAfterHttpDate() {
+        Client.Response withDate = new Client.Response(503, "Unavailable", "Wed, 21 Oct 2015 07:28:00 GMT");
+
+        assertEquals(30000, withDate.getRetryAfterMs(60000, Instant.parse("2015-10-21T07:27:30Z")));
+        assertEquals(0, withDate.getRetryAfterMs(60000, Instant.parse("2015-10-21T08:00:00Z")));
+    }
+
+    @Test
+    void testRateLimiterFollowsAdvertisedQuota() {
+        RateLimiter limiter = new RateLimiter();
+        assertEquals(0, limiter.tryAcquire(0));
+
+        limiter.update(new Client.Response(202, "", null,
+            Map.of("ratelimit-limit", "2", "ratelimit-remaining", "1", "ratelimit-reset", "10")), 0);
+        assertEquals(0, limiter.tryAcquire(1000));
+        assertEquals(9000, limiter.tryAcquire(1000));
+        assertEquals(0, limiter.tryAcquire(10_000));
+        assertEquals(0, limiter.tryAcquire(10_000));
+        assertEquals(0, limiter.tryAcquire(10_000));
+
+        // Reset given as epoch seconds
+        limiter.update(new Client.Response(429, "", null,
+            Map.of("x-ratelimit-remaining", "0", "x-ratelimit-reset", "1700000060")), 1_700_000_000_000L);
+        assertEquals(60_000, limiter.resetInMs(1_700_000_000_000L));
+        assertEquals(60_000, limiter.tryAcquire(1_700_000_000_000L));
+    }
+
     // ========== Checkend.getLogger() Tests ==========
 
     @Test
@@ -0,0 +1,70 @@
+package com.checkend;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the pool of reusable send buffers.
+ */
+class PoolTest {
+
+    @Test
+    void testReusesReleasedObjectsAndDiscardsOverflow() {
+        AtomicInteger created = new AtomicInteger();
+        List<Integer> discarded = new CopyOnWriteArrayList<>();
+        Pool<Integer> pool = new Pool<>(2, created::incrementAndGet, discarded::add);
+
+        Integer first = pool.acquire();
+        Integer second = pool.acquire();
+        Integer third = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+
+        assertEquals(3, created.get());
+        assertEquals(List.of(third), discarded);
+        assertNotSame(third, pool.acquire());
+        pool.clear();
+        assertEquals(2, discarded.size());
+        assertEquals(4, pool.acquire());
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void testVirtualThreadsShareBoundedObjects() throws InterruptedException {
+        AtomicInteger created = new AtomicInteger();
+        Pool<Object> pool = new Pool<>(4, () -> {
+            created.incrementAndGet();
+            return new Object();
+        }, item -> fail("nothing should be discarded"));
+        // Bounded the way the worker bounds its senders
+        Semaphore inFlight = new Semaphore(4);
+        ExecutorService executor = VirtualThreads.newExecutor("pool-test-");
+        assertNotNull(executor);
+
+        for (int i = 0; i < 1000; i++) {
+            inFlight.acquire();
+            executor.execute(() -> {
+                try {
+                    pool.release(pool.acquire());
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertTrue(created.get() <= 4, "created " + created.get());
+    }
+}
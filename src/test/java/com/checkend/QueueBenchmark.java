@@ -0,0 +1,102 @@
+package com.checkend;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Compares contended enqueue throughput of {@link RingBufferQueue} with the
+ * {@link LinkedBlockingQueue} the worker used before, with one consumer draining.
+ * Not run by the test suite; run it from the test classpath:
+ * {@code java -cp target/classes:target/test-classes com.checkend.QueueBenchmark [producers] [seconds]}.
+ */
+public final class QueueBenchmark {
+    private static final int CAPACITY = 1000;
+
+    private QueueBenchmark() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        for (int round = 0; round < 2; round++) {
+            String label = round == 0 ? " (warm-up)" : "";
+            RingBufferQueue<Object> ring = new RingBufferQueue<>(CAPACITY);
+            report("RingBufferQueue" + label, run(producers, seconds, ring::offer, () -> {
+                try {
+                    return ring.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }));
+            LinkedBlockingQueue<Object> linked = new LinkedBlockingQueue<>(CAPACITY);
+            report("LinkedBlockingQueue" + label, run(producers, seconds, linked::offer, () -> {
+                try {
+                    return linked.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }));
+        }
+    }
+
+    private static long[] run(int producers, int seconds, Predicate<Object> offer, Supplier<Object> consumer)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] offered = new long[producers];
+        long[] accepted = new long[producers];
+        Thread[] threads = new Thread[producers];
+        Object element = new Object();
+        for (int i = 0; i < producers; i++) {
+            int id = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long tries = 0;
+                long ok = 0;
+                while (running.get()) {
+                    tries++;
+                    if (offer.test(element)) {
+                        ok++;
+                    }
+                }
+                offered[id] = tries;
+                accepted[id] = ok;
+            });
+            threads[i].start();
+        }
+        Thread drain = new Thread(() -> {
+            while (running.get()) {
+                consumer.get();
+            }
+        });
+        drain.start();
+
+        start.countDown();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        drain.join();
+
+        long totalOffered = 0;
+        long totalAccepted = 0;
+        for (int i = 0; i < producers; i++) {
+            totalOffered += offered[i];
+            totalAccepted += accepted[i];
+        }
+        return new long[] {totalOffered / seconds, totalAccepted / seconds};
+    }
+
+    private static void report(String name, long[] perSecond) {
+        System.out.printf("%-32s %,15d offers/s %,15d accepted/s%n", name, perSecond[0], perSecond[1]);
+    }
+}
@@ -0,0 +1,44 @@
+package com.checkend;
+
+import org.junit.jupiter.api.*;
+
+import static com.checkend.ClientTest.notice;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for tracking queued copies of the same error.
+ */
+class QueuedDuplicatesTest {
+
+    @Test
+    void testFindsLatestCopyOfMostQueuedError() {
+        QueuedDuplicates duplicates = new QueuedDuplicates();
+        Delivery first = new Delivery(notice("storm"));
+        Delivery second = new Delivery(notice("storm"));
+        Delivery other = new Delivery(notice("other"));
+
+        duplicates.queued(first);
+        duplicates.queued(other);
+        assertNull(duplicates.mostDuplicated());
+
+        duplicates.queued(second);
+        assertSame(second, duplicates.mostDuplicated());
+
+        duplicates.taken(second);
+        assertNull(duplicates.mostDuplicated());
+    }
+
+    @Test
+    void testIgnoresNoticeTakenBeforeItWasTracked() {
+        QueuedDuplicates duplicates = new QueuedDuplicates();
+        Delivery first = new Delivery(notice("storm"));
+        Delivery taken = new Delivery(notice("storm"));
+
+        duplicates.queued(first);
+        // The dispatcher took it off the queue before the producer got to track it
+        duplicates.taken(taken);
+        duplicates.queued(taken);
+
+        assertNull(duplicates.mostDuplicated());
+    }
+}
@@ -0,0 +1,163 @@
+package com.checkend;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the worker's multi-producer ring buffer queue.
+ */
+class RingBufferQueueTest {
+
+    @Test
+    void testKeepsOrderAndDropsWhenFull() {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(3);
+
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(3));
+        assertFalse(queue.offer(4));
+        assertEquals(3, queue.size());
+
+        assertEquals(1, queue.poll());
+        assertTrue(queue.offer(5));
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, queue.drainTo(drained, 10));
+        assertEquals(List.of(2, 3, 5), drained);
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testSingleSlotQueue() {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(1);
+
+        assertTrue(queue.offer(1));
+        assertFalse(queue.offer(2));
+        assertEquals(1, queue.poll());
+        assertTrue(queue.offer(3));
+        assertFalse(queue.offer(4));
+        assertEquals(3, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void testRemovedElementMakesRoomAtTail() {
+        RingBufferQueue<String> queue = new RingBufferQueue<>(3);
+        queue.offer("a");
+        queue.offer("b");
+        queue.offer("c");
+
+        assertEquals("a", queue.peek());
+        assertTrue(queue.remove("a"));
+        assertFalse(queue.remove("a"));
+        assertEquals(2, queue.size());
+        assertTrue(queue.offer("d"));
+        assertFalse(queue.offer("e"));
+        List<String> drained = new ArrayList<>();
+        queue.drainTo(drained, 10);
+        assertEquals(List.of("b", "c", "d"), drained);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testRemovedSlotsAreReused() {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(2);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer(i));
+            assertTrue(queue.remove(i));
+            assertTrue(queue.canMakeRoom());
+            assertTrue(queue.offer(i));
+            assertTrue(queue.remove(i));
+            assertFalse(queue.canMakeRoom());
+            // Skips the removed slots
+            assertNull(queue.poll());
+        }
+        assertTrue(queue.offer(10));
+        assertTrue(queue.offer(11));
+        assertFalse(queue.offer(12));
+        assertEquals(10, queue.poll());
+        assertEquals(11, queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.offer(12));
+    }
+
+    @Test
+    void testTimedPollReturnsNullWhenEmpty() throws InterruptedException {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(4);
+
+        long start = System.nanoTime();
+        assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void testParkedConsumerIsWokenByProducer() throws InterruptedException {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(4);
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.offer(42);
+        });
+        producer.start();
+
+        long start = System.nanoTime();
+        assertEquals(42, queue.poll(10, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        producer.join();
+    }
+
+    @Test
+    void testConcurrentProducersDeliverEachElementOnce() throws InterruptedException {
+        int producers = 8;
+        int perProducer = 20_000;
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (!queue.offer(base + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        Set<Integer> seen = new HashSet<>();
+        int[] lastPerProducer = new int[producers];
+        Arrays.fill(lastPerProducer, -1);
+        while (seen.size() < producers * perProducer) {
+            Integer value = queue.poll(5, TimeUnit.SECONDS);
+            assertNotNull(value);
+            assertTrue(seen.add(value));
+            int producer = value / perProducer;
+            assertTrue(value % perProducer > lastPerProducer[producer]);
+            lastPerProducer[producer] = value % perProducer;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,91 @@
+package com.checkend;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for per-error sampling.
+ */
+class SamplerTest {
+
+    @BeforeEach
+    void setUp() {
+        Checkend.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Checkend.reset();
+    }
+
+    @Test
+    void testKeepsFirstThenDecays() {
+        Sampler sampler = new Sampler(2, 60_000);
+
+        long[] weights = new long[16];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = sampler.sample(42);
+        }
+
+        // 2 kept, then 1 in 2 for 2 notices, then 1 in 4
+        assertArrayEquals(new long[] {1, 1, 0, 2, 0, 2, 0, 0, 0, 4, 0, 0, 0, 4, 0, 0}, weights);
+        assertEquals(1, sampler.sample(7));
+    }
+
+    @Test
+    void testWeightsAddUpToOccurrences() {
+        Sampler sampler = new Sampler(10, 60_000);
+
+        long total = 0;
+        long kept = 0;
+        for (long occurrence = 1; occurrence <= 100_000; occurrence++) {
+            long weight = sampler.weight(occurrence);
+            total += weight;
+            kept += weight > 0 ? 1 : 0;
+            assertTrue(weight <= Sampler.MAX_INTERVAL);
+        }
+
+        assertTrue(Math.abs(100_000 - total) <= Sampler.MAX_INTERVAL);
+        assertTrue(kept < 200);
+    }
+
+    @Test
+    void testStartsOverEachPeriod() throws InterruptedException {
+        Sampler sampler = new Sampler(1, 50);
+
+        assertEquals(1, sampler.sample(42));
+        assertEquals(0, sampler.sample(42));
+        Thread.sleep(60);
+
+        assertEquals(1, sampler.sample(42));
+    }
+
+    @Test
+    void testNotifyDropsBeforeBuildingAndReportsWeight() {
+        InMemoryTransport transport = new InMemoryTransport();
+        AtomicInteger built = new AtomicInteger();
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .transport(transport)
+                .sampling(3)
+                .addBeforeNotify(notice -> built.incrementAndGet() > 0));
+
+        for (int i = 0; i < 10; i++) {
+            Checkend.notify(new IllegalStateException("error " + i));
+        }
+        Checkend.flush(5000);
+
+        // 3 kept, then 1 in 2 for the next 6 occurrences
+        assertEquals(6, built.get());
+        List<Notice> notices = transport.notices();
+        assertEquals(6, notices.size());
+        assertEquals(List.of(1L, 1L, 1L, 2L, 2L, 2L), notices.stream().map(Notice::getSampleWeight).toList());
+        assertEquals(2L, ((Number) notices.get(5).toMap().get("sample_weight")).longValue());
+        assertFalse(notices.get(0).toMap().containsKey("sample_weight"));
+    }
+}
@@ -0,0 +1,140 @@
+package com.checkend;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.checkend.ClientTest.notice;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the memory-mapped notice spool.
+ */
+class SpoolTest {
+    @TempDir
+    Path dir;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() {
+        file = dir.resolve("notices.spool");
+    }
+
+    private Spool open(int size) {
+        Spool spool = Spool.open(file, size, Logger.nullLogger());
+        assertNotNull(spool);
+        return spool;
+    }
+
+    private static List<Object> messages(List<Spool.Entry> entries) {
+        List<Object> messages = new ArrayList<>();
+        for (Spool.Entry entry : entries) {
+            messages.add(Notice.fromJson(entry.json()).toMap().get("message"));
+        }
+        return messages;
+    }
+
+    @Test
+    void testRecoversUnreleasedRecords() {
+        Spool spool = open(64 * 1024);
+        Spool.Entry first = spool.append(notice("first"));
+        spool.append(notice("second"));
+        Spool.Entry third = spool.append(notice("third"));
+        spool.release(first);
+        spool.release(third);
+        spool.close();
+
+        Spool reopened = open(64 * 1024);
+        List<Spool.Entry> recovered = reopened.takeRecovered();
+
+        assertEquals(List.of("second", "third"), messages(recovered));
+        reopened.release(recovered.get(0));
+        reopened.release(recovered.get(1));
+        reopened.close();
+        assertTrue(open(64 * 1024).takeRecovered().isEmpty());
+    }
+
+    @Test
+    void testWrapsAroundTheRing() {
+        Spool spool = open(4096);
+        for (int i = 0; i < 50; i++) {
+            Spool.Entry entry = spool.append(notice("error " + i));
+            assertNotNull(entry);
+            if (i < 48) {
+                spool.release(entry);
+            }
+        }
+        spool.close();
+
+        assertEquals(List.of("error 48", "error 49"), messages(open(4096).takeRecovered()));
+    }
+
+    @Test
+    void testConcurrentAppendsAreAllRecovered() throws InterruptedException {
+        Spool spool = open(256 * 1024);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    assertNotNull(spool.append(notice("error " + thread + "-" + i)));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        spool.close();
+
+        List<Object> recovered = messages(open(256 * 1024).takeRecovered());
+        assertEquals(400, recovered.size());
+        assertEquals(400, new HashSet<>(recovered).size());
+    }
+
+    @Test
+    void testRejectsAppendsWhenFull() {
+        Spool spool = open(4096);
+        int appended = 0;
+        while (spool.append(notice("error " + appended)) != null) {
+            appended++;
+        }
+
+        assertTrue(appended > 0);
+        assertEquals(appended, spool.size());
+    }
+
+    @Test
+    void testStopsRecoveryAtCorruptRecord() throws IOException {
+        Spool spool = open(64 * 1024);
+        spool.append(notice("first"));
+        spool.append(notice("second"));
+        spool.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long length = raf.length();
+            raf.seek(16 + 16 + 20);
+            int b = raf.read();
+            raf.seek(16 + 16 + 20);
+            raf.write(b ^ 0xff);
+            assertEquals(length, raf.length());
+        }
+
+        assertTrue(open(64 * 1024).takeRecovered().isEmpty());
+    }
+
+    @Test
+    void testSecondOpenOfLockedFileIsRejected() {
+        Spool spool = open(64 * 1024);
+
+        assertNull(Spool.open(file, 64 * 1024, Logger.nullLogger()));
+        spool.close();
+    }
+}
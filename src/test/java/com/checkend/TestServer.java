@@ -0,0 +1,92 @@
+package com.checkend;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local HTTP server that records ingest requests, for transport and worker tests.
+ */
+final class TestServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private volatile Function<Request, Reply> handler = request -> new Reply(201, "{\"id\":1}", null);
+
+    record Request(String path, String body, String ingestionKey, String contentType,
+                   String contentEncoding, String proxyAuthorization, int remotePort) {}
+
+    record Reply(int status, String body, String retryAfter, Map<String, String> headers) {
+        Reply(int status, String body, String retryAfter) {
+            this(status, body, retryAfter, Map.of());
+        }
+    }
+
+    TestServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            String body;
+            try (InputStream in = "gzip".equals(contentEncoding)
+                    ? new GZIPInputStream(exchange.getRequestBody())
+                    : exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            Request request = new Request(
+                exchange.getRequestURI().getPath(),
+                body,
+                exchange.getRequestHeaders().getFirst("Checkend-Ingestion-Key"),
+                exchange.getRequestHeaders().getFirst("Content-Type"),
+                contentEncoding,
+                exchange.getRequestHeaders().getFirst("Proxy-Authorization"),
+                exchange.getRemoteAddress().getPort()
+            );
+            requests.add(request);
+            Reply reply = handler.apply(request);
+            if (reply.retryAfter() != null) {
+                exchange.getResponseHeaders().add("Retry-After", reply.retryAfter());
+            }
+            reply.headers().forEach(exchange.getResponseHeaders()::add);
+            byte[] response = reply.body().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(reply.status(), response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    List<Request> requests() {
+        return requests;
+    }
+
+    void respond(Function<Request, Reply> handler) {
+        this.handler = handler;
+    }
+
+    void respond(int status, String body, String retryAfter) {
+        respond(request -> new Reply(status, body, retryAfter));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,207 @@
+package com.checkend;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.checkend.ClientTest.notice;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the pluggable transports.
+ */
+class TransportTest {
+
+    @BeforeEach
+    void setUp() {
+        Checkend.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Checkend.reset();
+    }
+
+    @Test
+    void testConfiguredTransportReceivesNotices() {
+        InMemoryTransport transport = new InMemoryTransport();
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .transport(transport));
+
+        Checkend.notify(new RuntimeException("Async error"));
+        Checkend.flush();
+        Client.Response response = Checkend.notifySync(new IllegalStateException("Sync error"));
+
+        assertEquals(202, response.statusCode());
+        List<Notice> notices = transport.notices();
+        assertEquals(2, notices.size());
+        assertTrue(notices.stream().anyMatch(n -> "Async error".equals(n.getMessage())));
+        assertTrue(notices.stream().anyMatch(n -> "java.lang.IllegalStateException".equals(n.getErrorClass())));
+    }
+
+    @Test
+    void testNotifyAsyncCompletesThroughTransport() throws Exception {
+        InMemoryTransport transport = new InMemoryTransport();
+        Checkend.configure(builder -> builder
+                .apiKey("test-key")
+                .enabled(true)
+                .transport(transport));
+
+        Client.Response response = Checkend.notifyAsync(new RuntimeException("Async error"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(202, response.statusCode());
+        assertEquals(1, transport.notices().size());
+    }
+
+    @Test
+    void testNotifyAsyncWhenNotConfigured() {
+        Client.Response response = Checkend.notifyAsync(new RuntimeException("error")).join();
+
+        assertEquals(0, response.statusCode());
+    }
+
+    @Test
+    void testInMemoryTransportBatchesThroughWorker() {
+        InMemoryTransport transport = new InMemoryTransport(false);
+        Configuration config = new Configuration.Builder()
+                .apiKey("test-key")
+                .batchSize(10)
+                .batchLingerMs(500)
+                .transport(transport)
+                .build();
+        Worker worker = new Worker(config, transport);
+
+        for (int i = 0; i < 10; i++) {
+            worker.enqueue(notice("error " + i));
+        }
+        worker.stop();
+
+        assertEquals(10, transport.deliveredCount());
+        assertEquals(1, transport.requestCount());
+        assertTrue(transport.notices().isEmpty());
+    }
+
+    @Test
+    void testFileTransportWritesNdjson(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("notices.ndjson");
+        FileTransport transport = new FileTransport(file);
+
+        transport.send(notice("first"));
+        transport.sendBatch(List.of(notice("second"), notice("third \"quoted\"\nline")));
+        transport.close();
+        transport.send(notice("after close"));
+        transport.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(4, lines.size());
+        for (String line : lines) {
+            Map<?, ?> parsed = (Map<?, ?>) JsonReader.parse(line);
+            assertEquals("java.lang.RuntimeException", parsed.get("error_class"));
+        }
+        assertEquals("third \"quoted\"\nline", ((Map<?, ?>) JsonReader.parse(lines.get(2))).get("message"));
+        assertEquals("after close", ((Map<?, ?>) JsonReader.parse(lines.get(3))).get("message"));
+    }
+
+    @Test
+    void testFileTransportReportsFailure(@TempDir Path dir) {
+        FileTransport transport = new FileTransport(dir.resolve("missing").resolve("notices.ndjson"));
+
+        Client.Response response = transport.send(notice("error"));
+
+        assertEquals(0, response.statusCode());
+    }
+
+    @Test
+    void testUnixSocketTransportWritesLengthPrefixedFrames(@TempDir Path dir) throws IOException {
+        Path socket = dir.resolve("relay.sock");
+        try (ServerSocketChannel relay = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            relay.bind(UnixDomainSocketAddress.of(socket));
+            UnixSocketTransport transport = new UnixSocketTransport(socket);
+
+            Client.Response single = transport.send(notice("first"));
+            Client.Response batch = transport.sendBatch(List.of(notice("second"), notice("third")));
+            transport.close();
+
+            assertEquals(202, single.statusCode());
+            assertEquals(202, batch.statusCode());
+            try (SocketChannel connection = relay.accept()) {
+                List<String> frames = readFrames(connection);
+                assertEquals(3, frames.size());
+                assertEquals("first", ((Map<?, ?>) JsonReader.parse(frames.get(0))).get("message"));
+                assertEquals("third", ((Map<?, ?>) JsonReader.parse(frames.get(2))).get("message"));
+            }
+        }
+    }
+
+    @Test
+    void testUnixSocketTransportTimesOutWhenRelayStopsReading(@TempDir Path dir) throws IOException {
+        Path socket = dir.resolve("relay.sock");
+        try (ServerSocketChannel relay = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            relay.bind(UnixDomainSocketAddress.of(socket));
+            UnixSocketTransport transport = new UnixSocketTransport(socket, 200);
+            List<Notice> notices = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                notices.add(notice("x".repeat(100_000)));
+            }
+
+            long start = System.nanoTime();
+            Client.Response response = transport.sendBatch(notices);
+            transport.close();
+
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+            // Only the frames written in full before the relay stalled count as delivered
+            assertEquals(207, response.statusCode());
+            List<Integer> statuses = response.itemStatuses();
+            assertEquals(200, statuses.size());
+            assertEquals(202, statuses.get(0));
+            assertEquals(0, statuses.get(199));
+            assertTrue(response.body().contains("timed out"));
+        }
+    }
+
+    @Test
+    void testUnixSocketTransportReportsMissingRelay(@TempDir Path dir) {
+        UnixSocketTransport transport = new UnixSocketTransport(dir.resolve("missing.sock"));
+
+        Client.Response response = transport.send(notice("error"));
+
+        assertEquals(0, response.statusCode());
+        assertTrue(response.body().startsWith("Relay unavailable"));
+    }
+
+    private static List<String> readFrames(SocketChannel connection) throws IOException {
+        List<String> frames = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(4);
+        while (readFully(connection, header.clear())) {
+            ByteBuffer payload = ByteBuffer.allocate(header.flip().getInt());
+            assertTrue(readFully(connection, payload));
+            frames.add(new String(payload.array(), StandardCharsets.UTF_8));
+        }
+        return frames;
+    }
+
+    private static boolean readFully(SocketChannel connection, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (connection.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,674 @@
+package com.checkend;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.checkend.ClientTest.notice;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the background worker against a local server.
+ */
+class WorkerTest {
+    private TestServer server;
+    private Worker worker;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new TestServer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (worker != null) {
+            worker.stop();
+        }
+        server.close();
+    }
+
+    private Configuration.Builder config() {
+        return new Configuration.Builder()
+                .apiKey("test-key")
+                .endpoint(server.endpoint());
+    }
+
+    private Worker start(Configuration config) {
+        worker = new Worker(config, new Client(config));
+        return worker;
+    }
+
+    @Test
+    void testSendsEachNoticeByDefault() {
+        Worker worker = start(config().build());
+
+        worker.enqueue(notice("first"));
+        worker.enqueue(notice("second"));
+        worker.flush(5000);
+        worker.stop();
+
+        assertEquals(2, server.requests().size());
+        assertTrue(server.requests().get(0).body().startsWith("{"));
+    }
+
+    @Test
+    void testBatchesQueuedNotices() {
+        Worker worker = start(config().batchSize(10).batchLingerMs(500).build());
+
+        for (int i = 0; i < 5; i++) {
+            worker.enqueue(notice("error " + i));
+        }
+        worker.stop();
+
+        assertEquals(1, server.requests().size());
+        String body = server.requests().get(0).body();
+        assertTrue(body.startsWith("["));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(body.contains("\"message\":\"error " + i + "\""));
+        }
+    }
+
+    @Test
+    void testBatchSizeLimit() {
+        Worker worker = start(config().batchSize(2).batchLingerMs(500).build());
+
+        for (int i = 0; i < 5; i++) {
+            worker.enqueue(notice("error " + i));
+        }
+        worker.stop();
+
+        assertEquals(3, server.requests().size());
+    }
+
+    @Test
+    void testRetriesOnlyFailedBatchItems() {
+        AtomicInteger calls = new AtomicInteger();
+        server.respond(request -> calls.incrementAndGet() == 1
+            ? new TestServer.Reply(207,
+                "{\"results\":[{\"status\":201},{\"status\":503},{\"status\":422}]}", null)
+            : new TestServer.Reply(201, "{}", null));
+        Worker worker = start(config().batchSize(3).batchLingerMs(500).build());
+
+        worker.enqueue(notice("accepted"));
+        worker.enqueue(notice("unavailable"));
+        worker.enqueue(notice("rejected"));
+        worker.stop();
+
+        assertEquals(2, server.requests().size());
+        String retried = server.requests().get(1).body();
+        assertTrue(retried.startsWith("{"));
+        assertTrue(retried.contains("\"message\":\"unavailable\""));
+    }
+
+    @Test
+    void testClientErrorDropsBatch() {
+        server.respond(400, "bad request", null);
+        Worker worker = start(config().batchSize(3).batchLingerMs(500).build());
+
+        worker.enqueue(notice("first"));
+        worker.enqueue(notice("second"));
+        worker.stop();
+
+        assertEquals(1, server.requests().size());
+    }
+
+    @Test
+    void testSubmitCompletesWhenAcknowledged() throws Exception {
+        Worker worker = start(config().build());
+
+        Client.Response response = worker.submit(notice("error")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(201, response.statusCode());
+    }
+
+    @Test
+    void testSubmitCompletesWhenRejected() throws Exception {
+        server.respond(422, "invalid", null);
+        Worker worker = start(config().build());
+
+        Client.Response response = worker.submit(notice("error")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(422, response.statusCode());
+    }
+
+    @Test
+    void testSubmitCompletesWhenRetriesExhausted() throws Exception {
+        server.respond(503, "unavailable", null);
+        Worker worker = start(config().build());
+
+        Client.Response response = worker.submit(notice("error")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(503, response.statusCode());
+        assertEquals(3, server.requests().size());
+    }
+
+    @Test
+    void testSubmitCompletesWithPerNoticeResults() throws Exception {
+        server.respond(207, "[{\"status\":201},{\"status\":422}]", null);
+        Worker worker = start(config().batchSize(2).batchLingerMs(500).build());
+
+        CompletableFuture<Client.Response> accepted = worker.submit(notice("accepted"));
+        CompletableFuture<Client.Response> rejected = worker.submit(notice("rejected"));
+
+        assertEquals(201, accepted.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(422, rejected.get(5, TimeUnit.SECONDS).statusCode());
+    }
+
+    @Test
+    void testSubmitAfterStopCompletesImmediately() {
+        Worker worker = start(config().build());
+        worker.stop();
+
+        CompletableFuture<Client.Response> future = worker.submit(notice("error"));
+
+        assertTrue(future.isDone());
+        assertEquals(0, future.join().statusCode());
+    }
+
+    @Test
+    void testSubmitRacingStopAlwaysCompletes() throws Exception {
+        Worker worker = new Worker(config().build(), new InMemoryTransport());
+        List<CompletableFuture<Client.Response>> futures = new CopyOnWriteArrayList<>();
+        List<Thread> reporters = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            reporters.add(new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    futures.add(worker.submit(notice("error " + i)));
+                }
+            }));
+        }
+        reporters.forEach(Thread::start);
+        worker.stop();
+        for (Thread reporter : reporters) {
+            reporter.join();
+        }
+
+        for (CompletableFuture<Client.Response> future : futures) {
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, worker.pendingCount());
+    }
+
+    @Test
+    void testKeepsMultipleRequestsInFlight() throws Exception {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        server.respond(request -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            concurrent.decrementAndGet();
+            return new TestServer.Reply(201, "{}", null);
+        });
+        Worker worker = start(config().maxInFlight(4).build());
+
+        List<CompletableFuture<Client.Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(worker.submit(notice("error " + i)));
+        }
+        for (CompletableFuture<Client.Response> future : futures) {
+            assertEquals(201, future.get(5, TimeUnit.SECONDS).statusCode());
+        }
+
+        assertEquals(8, server.requests().size());
+        assertTrue(maxConcurrent.get() > 1);
+        assertTrue(maxConcurrent.get() <= 4);
+    }
+
+    @Test
+    void testStopWaitsForInFlightRequests() {
+        server.respond(request -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new TestServer.Reply(201, "{}", null);
+        });
+        Worker worker = start(config().maxInFlight(3).build());
+
+        List<CompletableFuture<Client.Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(worker.submit(notice("error " + i)));
+        }
+        worker.stop();
+
+        assertEquals(6, server.requests().size());
+        for (CompletableFuture<Client.Response> future : futures) {
+            assertTrue(future.isDone());
+        }
+    }
+
+    @Test
+    void testSenderOutlivingStopHandsBackItsRetry() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Transport transport = new Transport() {
+            @Override
+            public Client.Response send(Notice notice) {
+                sending.countDown();
+                // Ignore the interrupt from shutdownNow() so the sender outlives stop()
+                long deadline = System.currentTimeMillis() + 5000;
+                while (release.getCount() > 0 && System.currentTimeMillis() < deadline) {
+                    Thread.onSpinWait();
+                }
+                return new Client.Response(500, "", null);
+            }
+
+            @Override
+            public Client.Response sendBatch(List<Notice> notices) {
+                return send(notices.get(0));
+            }
+        };
+        Configuration config = config().maxInFlight(2).shutdownTimeout(100).build();
+        worker = new Worker(config, transport);
+
+        CompletableFuture<Client.Response> future = worker.submit(notice("late failure"));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        worker.stop();
+        release.countDown();
+
+        Client.Response response = future.get(5, TimeUnit.SECONDS);
+        assertEquals(0, response.statusCode());
+        assertEquals("Worker stopped", response.body());
+        assertEquals(0, worker.pendingCount());
+    }
+
+    @Test
+    void testQueueLeftToDispatcherOutlivingStop() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Transport transport = new Transport() {
+            @Override
+            public Client.Response send(Notice notice) {
+                sending.countDown();
+                // Ignore the interrupt from shutdownNow() so the dispatcher outlives stop()
+                long deadline = System.currentTimeMillis() + 5000;
+                while (release.getCount() > 0 && System.currentTimeMillis() < deadline) {
+                    Thread.onSpinWait();
+                }
+                return new Client.Response(202, "", null);
+            }
+
+            @Override
+            public Client.Response sendBatch(List<Notice> notices) {
+                return send(notices.get(0));
+            }
+        };
+        worker = new Worker(config().shutdownTimeout(100).build(), transport);
+
+        CompletableFuture<Client.Response> inFlight = worker.submit(notice("in flight"));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Client.Response> queued = worker.submit(notice("queued"));
+        worker.stop();
+
+        // Only the dispatcher may take it off the queue, and it is still sending
+        assertFalse(queued.isDone());
+        release.countDown();
+
+        assertEquals(202, inFlight.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals("Worker stopped", queued.get(5, TimeUnit.SECONDS).body());
+    }
+
+    @Test
+    void testReplaysSpooledNoticesAfterRestart(@TempDir Path dir) {
+        Path spool = dir.resolve("notices.spool");
+        server.respond(429, "slow down", "60");
+        Worker worker = start(config().spool(spool).shutdownTimeout(200).build());
+        worker.enqueue(notice("first"));
+        worker.enqueue(notice("second"));
+        worker.stop();
+
+        server.respond(201, "{}", null);
+        Worker restarted = start(config().spool(spool).build());
+        restarted.flush(5000);
+        restarted.stop();
+
+        List<String> bodies = server.requests().stream().map(TestServer.Request::body).toList();
+        assertTrue(bodies.stream().skip(1).anyMatch(body -> body.contains("\"message\":\"first\"")));
+        assertTrue(bodies.stream().skip(1).anyMatch(body -> body.contains("\"message\":\"second\"")));
+        assertEquals(3, bodies.size());
+    }
+
+    @Test
+    void testDeliveredNoticesAreNotReplayed(@TempDir Path dir) {
+        Path spool = dir.resolve("notices.spool");
+        Worker worker = start(config().spool(spool).build());
+        worker.enqueue(notice("first"));
+        worker.flush(5000);
+        worker.stop();
+
+        start(config().spool(spool).build()).stop();
+
+        assertEquals(1, server.requests().size());
+    }
+
+    /**
+     * Transport that holds the first request until released, so the queue behind it fills up.
+     */
+    private static final class BlockingTransport implements Transport {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> messages = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Client.Response send(Notice notice) {
+            sending.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            messages.add(notice.getMessage());
+            return new Client.Response(202, "", null);
+        }
+
+        @Override
+        public Client.Response sendBatch(List<Notice> notices) {
+            notices.forEach(this::send);
+            return new Client.Response(202, "", null);
+        }
+    }
+
+    private Worker fillQueue(OverflowPolicy policy, BlockingTransport transport, String... queued)
+            throws InterruptedException {
+        Configuration config = config().maxQueueSize(queued.length).overflowPolicy(policy, 2000).build();
+        worker = new Worker(config, transport);
+        worker.enqueue(notice("in flight"));
+        assertTrue(transport.sending.await(5, TimeUnit.SECONDS));
+        for (String message : queued) {
+            assertTrue(worker.enqueue(notice(message)));
+        }
+        return worker;
+    }
+
+    @Test
+    void testDropNewestOnOverflow() throws InterruptedException {
+        BlockingTransport transport = new BlockingTransport();
+        Worker worker = fillQueue(OverflowPolicy.DROP_NEWEST, transport, "a", "b");
+
+        assertFalse(worker.enqueue(notice("c")));
+        transport.release.countDown();
+        worker.stop();
+
+        assertEquals(List.of("in flight", "a", "b"), transport.messages);
+        assertEquals(1, worker.droppedNewestCount());
+    }
+
+    @Test
+    void testDropOldestOnOverflow() throws InterruptedException {
+        BlockingTransport transport = new BlockingTransport();
+        Worker worker = fillQueue(OverflowPolicy.DROP_OLDEST, transport, "a", "b");
+
+        assertTrue(worker.enqueue(notice("c")));
+        transport.release.countDown();
+        worker.stop();
+
+        assertEquals(List.of("in flight", "b", "c"), transport.messages);
+        assertEquals(1, worker.droppedOldestCount());
+        assertEquals(0, worker.droppedNewestCount());
+    }
+
+    @Test
+    void testDropMostDuplicatedOnOverflow() throws InterruptedException {
+        BlockingTransport transport = new BlockingTransport();
+        Worker worker = fillQueue(OverflowPolicy.DROP_MOST_DUPLICATED, transport, "storm", "storm", "storm");
+
+        assertTrue(worker.enqueue(notice("rare")));
+        assertTrue(worker.enqueue(notice("other")));
+        assertFalse(worker.enqueue(notice("unique")));
+        transport.release.countDown();
+        worker.stop();
+
+        assertEquals(List.of("in flight", "storm", "rare", "other"), transport.messages);
+        assertEquals(2, worker.droppedDuplicateCount());
+        assertEquals(1, worker.droppedNewestCount());
+    }
+
+    @Test
+    void testBlockWaitsForRoomOnOverflow() throws InterruptedException {
+        BlockingTransport transport = new BlockingTransport();
+        Worker worker = fillQueue(OverflowPolicy.BLOCK, transport, "a");
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            transport.release.countDown();
+        }).start();
+
+        assertTrue(worker.enqueue(notice("b")));
+        worker.stop();
+
+        assertEquals(List.of("in flight", "a", "b"), transport.messages);
+        assertEquals(1, worker.blockedCount());
+        assertEquals(0, worker.droppedNewestCount());
+    }
+
+    private Worker fillBytes(OverflowPolicy policy, BlockingTransport transport, String... queued)
+            throws InterruptedException {
+        Configuration config = config().maxQueueBytes(3500).overflowPolicy(policy).build();
+        worker = new Worker(config, transport);
+        worker.enqueue(notice("in flight"));
+        assertTrue(transport.sending.await(5, TimeUnit.SECONDS));
+        for (String message : queued) {
+            assertTrue(worker.enqueue(notice(message)));
+        }
+        return worker;
+    }
+
+    private static String large(String prefix) {
+        return prefix + "x".repeat(1200);
+    }
+
+    @Test
+    void testByteLimitDropsNewest() throws InterruptedException {
+        BlockingTransport transport = new BlockingTransport();
+        Worker worker = fillBytes(OverflowPolicy.DROP_NEWEST, transport, large("a"), large("b"));
+
+        assertTrue(worker.queuedBytes() > 2400);
+        assertFalse(worker.enqueue(notice(large("c"))));
+        assertTrue(worker.enqueue(notice("small")));
+        transport.release.countDown();
+        worker.stop();
+
+        assertEquals(4, transport.messages.size());
+        assertEquals(1, worker.droppedNewestCount());
+        assertEquals(0, worker.queuedBytes());
+    }
+
+    @Test
+    void testByteLimitEvictsOldest() throws InterruptedException {
+        BlockingTransport transport = new BlockingTransport();
+        Worker worker = fillBytes(OverflowPolicy.DROP_OLDEST, transport, large("a"), large("b"));
+
+        assertTrue(worker.enqueue(notice(large("c"))));
+        transport.release.countDown();
+        worker.stop();
+
+        assertEquals(List.of("in flight", large("b"), large("c")), transport.messages);
+        assertEquals(1, worker.droppedOldestCount());
+        assertEquals(0, worker.queuedBytes());
+    }
+
+    @Test
+    void testEstimatedSizeTracksSerializedSize() {
+        Map<String, Object> context = Map.of("order", Map.of("id", 42, "items", List.of("a", "b")));
+        Notice built = new NoticeBuilder(new Configuration.Builder().apiKey("key").build())
+            .build(new IllegalStateException("estimate me"), Map.of("context", context, "tags", List.of("checkout")));
+        JsonWriter writer = new JsonWriter();
+        built.writeJson(writer);
+
+        long estimate = built.estimatedSize();
+        assertTrue(estimate > writer.size() / 2 && estimate < writer.size() * 2,
+            "estimate " + estimate + " vs actual " + writer.size());
+    }
+
+    @Test
+    void testFlushWaitsForInFlightRequest() {
+        server.respond(request -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new TestServer.Reply(201, "{}", null);
+        });
+        Worker worker = start(config().build());
+        worker.enqueue(notice("slow"));
+        while (worker.queueSize() > 0) {
+            Thread.onSpinWait();
+        }
+
+        long start = System.nanoTime();
+        FlushResult result = worker.flushWithResult(5000);
+
+        assertEquals(1, server.requests().size());
+        assertEquals(new FlushResult(1, 0, 0), result);
+        assertTrue(result.isComplete());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    void testFlushCountsDroppedAndPending() throws InterruptedException {
+        BlockingTransport transport = new BlockingTransport();
+        Worker worker = fillQueue(OverflowPolicy.DROP_NEWEST, transport, "a");
+        worker.enqueue(notice("overflow"));
+
+        FlushResult timedOut = worker.flushWithResult(50);
+        transport.release.countDown();
+        FlushResult settled = worker.flushWithResult(5000);
+
+        assertEquals(new FlushResult(0, 1, 2), timedOut);
+        assertEquals(new FlushResult(2, 0, 0), settled);
+        assertEquals(0, worker.pendingCount());
+    }
+
+    @Test
+    void testFailingNoticeDoesNotStallOthers() throws Exception {
+        server.respond(request -> request.body().contains("\"message\":\"bad\"")
+            ? new TestServer.Reply(503, "unavailable", "1")
+            : new TestServer.Reply(201, "{}", null));
+        Worker worker = start(config().build());
+
+        long start = System.nanoTime();
+        CompletableFuture<Client.Response> bad = worker.submit(notice("bad"));
+        CompletableFuture<Client.Response> good = worker.submit(notice("good"));
+
+        assertEquals(201, good.get(5, TimeUnit.SECONDS).statusCode());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(900));
+        assertFalse(bad.isDone());
+        assertEquals(503, bad.get(10, TimeUnit.SECONDS).statusCode());
+        assertEquals(4, server.requests().size());
+        assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    void testPausesWhenAdvertisedQuotaIsUsedUp() throws Exception {
+        server.respond(request -> new TestServer.Reply(201, "{}", null,
+            Map.of("RateLimit-Limit", "1", "RateLimit-Remaining", "0", "RateLimit-Reset", "1")));
+        Worker worker = start(config().build());
+
+        assertEquals(201, worker.submit(notice("first")).get(5, TimeUnit.SECONDS).statusCode());
+        long start = System.nanoTime();
+        CompletableFuture<Client.Response> second = worker.submit(notice("second"));
+        CompletableFuture<Client.Response> third = worker.submit(notice("third"));
+
+        Thread.sleep(200);
+        assertTrue(worker.isRateLimited());
+        assertEquals(1, server.requests().size());
+        assertEquals(201, second.get(5, TimeUnit.SECONDS).statusCode());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(700));
+        assertEquals(201, third.get(5, TimeUnit.SECONDS).statusCode());
+        assertTrue(server.requests().get(1).body().contains("\"message\":\"second\""));
+    }
+
+    @Test
+    void testResumesInOrderAfterRateLimit() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        server.respond(request -> requests.incrementAndGet() == 1
+            ? new TestServer.Reply(429, "slow down", "1")
+            : new TestServer.Reply(201, "{}", null));
+        Worker worker = start(config().build());
+
+        List<CompletableFuture<Client.Response>> futures = new ArrayList<>();
+        for (String message : List.of("first", "second", "third")) {
+            futures.add(worker.submit(notice(message)));
+        }
+        for (CompletableFuture<Client.Response> future : futures) {
+            assertEquals(201, future.get(5, TimeUnit.SECONDS).statusCode());
+        }
+
+        List<String> bodies = server.requests().stream().map(TestServer.Request::body).toList();
+        assertEquals(4, bodies.size());
+        assertTrue(bodies.get(0).contains("\"message\":\"first\""));
+        assertTrue(bodies.get(1).contains("\"message\":\"first\""));
+        assertTrue(bodies.get(2).contains("\"message\":\"second\""));
+        assertTrue(bodies.get(3).contains("\"message\":\"third\""));
+        assertFalse(worker.isRateLimited());
+    }
+
+    @Test
+    void testStopWakesWorkerPausedForRateLimit() throws Exception {
+        server.respond(request -> new TestServer.Reply(429, "slow down", "60"));
+        Worker worker = start(config().shutdownTimeout(5000).build());
+
+        worker.enqueue(notice("first"));
+        CompletableFuture<Client.Response> queued = worker.submit(notice("second"));
+        Thread.sleep(200);
+        long start = System.nanoTime();
+        worker.stop();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, queued.get(1, TimeUnit.SECONDS).statusCode());
+        assertEquals(1, server.requests().size());
+    }
+
+    @Test
+    void testVirtualThreadsOption() {
+        Worker worker = start(config().virtualThreads(true).maxInFlight(4).build());
+
+        for (int i = 0; i < 8; i++) {
+            worker.enqueue(notice("error " + i));
+        }
+        FlushResult flushed = worker.flushWithResult(5000);
+        worker.stop();
+
+        assertEquals(Runtime.version().feature() >= 21, VirtualThreads.isSupported());
+        assertEquals(new FlushResult(8, 0, 0), flushed);
+        assertEquals(8, server.requests().size());
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void testCompressedSendsOnVirtualThreads() {
+        Worker worker = start(config().virtualThreads(true).maxInFlight(4).compression(true, 0).build());
+
+        for (int i = 0; i < 50; i++) {
+            worker.enqueue(notice("error " + i));
+        }
+        FlushResult flushed = worker.flushWithResult(5000);
+        worker.stop();
+
+        assertEquals(new FlushResult(50, 0, 0), flushed);
+        assertEquals(50, server.requests().size());
+        assertTrue(server.requests().stream().allMatch(request -> request.body().contains("\"message\":\"error ")));
+    }
+}
@@ -0,0 +1,188 @@
+package com.checkend.relay;
+
+import com.checkend.Client;
+import com.checkend.Configuration;
+import com.checkend.InMemoryTransport;
+import com.checkend.Notice;
+import com.checkend.UnixSocketTransport;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the standalone relay.
+ */
+class RelayTest {
+    private InMemoryTransport upstream;
+    private Relay relay;
+
+    @BeforeEach
+    void setUp() {
+        upstream = new InMemoryTransport();
+        relay = new Relay(new Configuration.Builder()
+                .apiKey("relay-key")
+                .batchSize(50)
+                .batchLingerMs(200)
+                .transport(upstream)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        relay.close();
+    }
+
+    private static Notice notice(String message) {
+        Notice notice = new Notice();
+        notice.setErrorClass("java.lang.RuntimeException");
+        notice.setMessage(message);
+        notice.setEnvironment("test");
+        return notice;
+    }
+
+    private List<Object> forwardedMessages() {
+        return upstream.notices().stream().map(n -> n.toMap().get("message")).toList();
+    }
+
+    @Test
+    void testForwardsNoticesReceivedOverHttp() throws IOException {
+        InetSocketAddress address = relay.listenHttp(0);
+        Client client = new Client(new Configuration.Builder()
+                .apiKey("service-key")
+                .endpoint("http://127.0.0.1:" + address.getPort())
+                .compression(true, 0)
+                .build());
+
+        Client.Response single = client.send(notice("first"));
+        Client.Response batch = client.sendBatch(List.of(notice("second"), notice("third")));
+        relay.close();
+
+        assertEquals(202, single.statusCode());
+        assertEquals(202, batch.statusCode());
+        assertEquals(3, relay.receivedCount());
+        assertEquals(List.of("first", "second", "third"), forwardedMessages());
+        assertEquals(1, upstream.requestCount());
+    }
+
+    @Test
+    void testRejectsMalformedPayload() throws Exception {
+        InetSocketAddress address = relay.listenHttp(0);
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + address.getPort() + "/ingest/v1/errors"))
+                        .POST(HttpRequest.BodyPublishers.ofString("[{\"message\":\"ok\"}, 42]"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(400, response.statusCode());
+        assertEquals(0, relay.receivedCount());
+        assertEquals(1, relay.rejectedCount());
+    }
+
+    @Test
+    void testRejectsPayloadTooLargeOnceInflated() throws Exception {
+        InetSocketAddress address = relay.listenHttp(0);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(new byte[17 * 1024 * 1024]);
+        }
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + address.getPort() + "/ingest/v1/errors"))
+                        .header("Content-Encoding", "gzip")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(compressed.toByteArray()))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(413, response.statusCode());
+        assertEquals(0, relay.receivedCount());
+    }
+
+    @Test
+    void testForwardsNoticesReceivedOverUnixSocket(@TempDir Path dir) throws Exception {
+        Path socket = dir.resolve("relay.sock");
+        relay.listenUnix(socket);
+        UnixSocketTransport transport = new UnixSocketTransport(socket);
+
+        transport.sendBatch(List.of(notice("first"), notice("second")));
+        transport.send(notice("third"));
+        transport.close();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (relay.receivedCount() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        relay.close();
+
+        assertEquals(List.of("first", "second", "third"), forwardedMessages());
+    }
+
+    @Test
+    void testDropsMalformedSocketFrames(@TempDir Path dir) throws Exception {
+        Path socket = dir.resolve("relay.sock");
+        relay.listenUnix(socket);
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            for (String frame : List.of("{\"message\":\"truncat", "garbage", "{} {}", "{\"message\":\"good\"}")) {
+                byte[] bytes = frame.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (relay.receivedCount() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        relay.close();
+
+        assertEquals(3, relay.rejectedCount());
+        assertEquals(List.of("good"), forwardedMessages());
+    }
+
+    @Test
+    void testSplitsArraysWithoutParsing() {
+        byte[] body = " [ {\"message\":\"a ]}\\\"\"} ,{\"tags\":[\"x\"],\"context\":{\"k\":{}}}]\n"
+                .getBytes(StandardCharsets.UTF_8);
+
+        List<byte[]> notices = NoticeSplitter.split(body, body.length);
+
+        assertEquals(2, notices.size());
+        assertEquals("{\"message\":\"a ]}\\\"\"}", new String(notices.get(0), StandardCharsets.UTF_8));
+        assertEquals(Map.of("k", Map.of()),
+                Notice.fromJson(notices.get(1)).toMap().get("context"));
+        assertEquals(1, NoticeSplitter.split(new byte[] {'{', '}'}, 2).size());
+        assertThrows(IllegalArgumentException.class, () -> NoticeSplitter.split(new byte[] {'{'}, 1));
+        assertThrows(IllegalArgumentException.class, () -> NoticeSplitter.split("{} {}".getBytes(), 5));
+    }
+
+    @Test
+    void testRejectsNoticesThatAreNotWellFormedJson() {
+        for (String invalid : List.of("{\"a\":}", "{\"a\" 1}", "{\"a\":[1,]}", "{\"a\":01}", "{\"a\":tru}",
+                "{\"a\":\"\\x\"}", "{\"a\":\"\\u12\"}", "{a:1}", "{\"a\":1,}", "{\"a\":[}]}", "{\"a\":\"tab\there\"}")) {
+            byte[] body = invalid.getBytes(StandardCharsets.UTF_8);
+            assertThrows(IllegalArgumentException.class, () -> NoticeSplitter.split(body, body.length), invalid);
+            assertFalse(NoticeSplitter.isNotice(body), invalid);
+        }
+        byte[] valid = "{\"a\":[-1.5e3,true,null,\"\\u00e9\\n\"],\"b\":{}}".getBytes(StandardCharsets.UTF_8);
+        assertTrue(NoticeSplitter.isNotice(valid));
+        assertEquals(1, NoticeSplitter.split(valid, valid.length).size());
+        assertFalse(NoticeSplitter.isNotice("[{}]".getBytes(StandardCharsets.UTF_8)));
+        String deep = "{\"a\":" + "[".repeat(1000) + "]".repeat(1000) + "}";
+        assertFalse(NoticeSplitter.isNotice(deep.getBytes(StandardCharsets.UTF_8)));
+    }
+}